@@ -15,12 +15,66 @@ public interface Actor
      */
     void act(List<Actor> newActors);
 
+    /**
+     * Work out what this actor will do in a synchronous step, and record
+     * it in the intent. The field is frozen: the actor may change its
+     * own state, including dying, but the cells do not change until
+     * the step is committed.
+     * @param intent Receives the plan.
+     */
+    void plan(Intent intent);
+
+    /**
+     * Carry out the plan made for a synchronous step, once it is known
+     * which of the cells it claimed were won.
+     * @param intent The plan.
+     * @param newActors A list to receive new actors.
+     */
+    void commit(Intent intent, List<Actor> newActors);
+
+    /**
+     * Let this actor sleep through the coming steps in which it would
+     * have nothing to do, so that it need not be asked to act in them.
+     * It is asked just after its turn. It stays in the field while it
+     * sleeps, and may still be eaten.
+     * @param most The most steps it may sleep.
+     * @return The number of steps it sleeps, 0 to act in the next one.
+     */
+    int sleep(int most);
+
+    /**
+     * Return the change that would give this sleeping actor something
+     * to do before its sleep ends, so that it is woken early when the
+     * change comes about.
+     * @return The change (see Change), or Change.NONE.
+     */
+    int getAwaitedChange();
+
+    /**
+     * Bring this actor up to date after it has slept, as if it had
+     * acted in the steps it slept through. It acts straight after.
+     * @param steps The number of steps it slept through.
+     */
+    void wake(int steps);
+
     /**
      * Check whether the actor is alive or not.
      * @return true if the actor is still alive.
      */
     boolean isAlive();
 
+    /**
+     * Indicate that the actor is no longer alive.
+     * It is removed from the field.
+     */
+    void setDead();
+
+    /**
+     * Return the actor's location.
+     * @return The actor's location, or null if it has left the field.
+     */
+    Location getLocation();
+
     /**
      * Place the actor at the new location in the given field.
      * @param newLocation The actor's new location.
@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The actors of a simulation, kept in an array that is compacted as
+ * the actors act. Dead actors are squeezed out in the same pass, with
+ * one index reading and another writing, so removing any number of
+ * them costs no more than the pass itself. The removed actors go to
+ * the thread's ActorPool to be reborn. Newborns are collected in a
+ * buffer that is kept from one step to the next.
+ *
+ * An actor with nothing to do for a while (see Actor.sleep) is taken
+ * out of the array after its turn and parked in a WaitSet, so it is
+ * not called until it must act again: when its sleep ends, or earlier
+ * if the change it waits for (see Change) comes about. It stays in the
+ * field all the while. Plastic, which never acts, sleeps for as long
+ * as it may, and is only looked at to drop it once it has been eaten.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class ActorList
+{
+    // The number of steps the wait sets cover. No actor sleeps for
+    // longer than this.
+    private static final int WAIT_STEPS = 64;
+
+    // The actors, in the order in which they act.
+    private Actor[] actors;
+    // The number of actors.
+    private int size;
+    // Receives the actors born during a step.
+    private List<Actor> newborns;
+    // The number of actors born during the last step.
+    private int births;
+    // The number of actors removed during the last step.
+    private int deaths;
+    // The number of sleeping actors found dead when the step began.
+    private int diedAsleep;
+    // The changes that wake sleeping actors, or null if actors may not
+    // go to sleep in this list.
+    private Change changes;
+    // The sleeping actors, by the change they wait for.
+    private WaitSet[] waitSets;
+    // The number of times each change had been fired when it was
+    // last looked at.
+    private int[] seen;
+    // The number of steps taken.
+    private int clock;
+
+    /**
+     * Create an empty list of actors.
+     * @param changes The changes of the simulation, which wake the
+     *                actors sleeping in this list; or null if actors
+     *                may not sleep in it. A list whose actors are
+     *                gathered into another (see gather) leaves their
+     *                sleep to that one.
+     */
+    public ActorList(Change changes)
+    {
+        actors = new Actor[1024];
+        size = 0;
+        newborns = new ArrayList<>();
+        births = 0;
+        deaths = 0;
+        this.changes = changes;
+        waitSets = new WaitSet[Change.COUNT];
+        seen = new int[Change.COUNT];
+        for(int change = 0; change < Change.COUNT; change++) {
+            waitSets[change] = new WaitSet(WAIT_STEPS);
+        }
+        see();
+        clock = 0;
+    }
+
+    /**
+     * Add an actor at the end of the list.
+     * @param actor The actor to add.
+     */
+    public void add(Actor actor)
+    {
+        if(size == actors.length) {
+            actors = Arrays.copyOf(actors, size * 2);
+        }
+        actors[size++] = actor;
+    }
+
+    /**
+     * Let every actor act once, in order. An actor that is no longer
+     * alive after its turn is removed, and the newborns are added at
+     * the end, ready to act in the next step.
+     */
+    public void act()
+    {
+        wake();
+        newborns.clear();
+        ActorPool pool = ActorPool.get();
+        int kept = 0;
+        for(int i = 0; i < size; i++) {
+            Actor actor = actors[i];
+            // The clock is only read when the turns are being timed.
+            long start = Metrics.ENABLED ? System.nanoTime() : 0;
+            actor.act(newborns);
+            if(Metrics.ENABLED) {
+                Metrics.recordTurn(Species.codeOf(actor), start);
+            }
+            if(actor.isAlive()) {
+                if(!park(actor)) {
+                    actors[kept++] = actor;
+                }
+            }
+            else {
+                pool.recycle(actor);
+            }
+        }
+        // Let go of the removed actors left at the end.
+        Arrays.fill(actors, kept, size, null);
+        deaths = size - kept + diedAsleep;
+        size = kept;
+        births = newborns.size();
+        for(Actor newborn : newborns) {
+            add(newborn);
+        }
+        newborns.clear();
+    }
+
+    /**
+     * Start a new step: the actors whose sleep ends in this step, and
+     * those waiting for a change that has come about since the last
+     * step, are added at the end of the list to act again; those that
+     * died in their sleep are dropped. This is done by act, and must be
+     * done by anything else that steps the actors.
+     */
+    public void wake()
+    {
+        clock++;
+        diedAsleep = 0;
+        if(changes == null) {
+            return;
+        }
+        for(int change = 0; change < Change.COUNT; change++) {
+            int fired = changes.getFired(change);
+            if(fired != seen[change]) {
+                seen[change] = fired;
+                diedAsleep += waitSets[change].wakeAll(clock, this);
+            }
+            else {
+                diedAsleep += waitSets[change].wakeDue(clock, this);
+            }
+        }
+    }
+
+    /**
+     * Replace the awake actors with those of a number of other lists,
+     * in order, putting those with nothing to do to sleep. The counts
+     * of births and deaths become the totals of those lists' counts.
+     * @param parts The lists to take the actors from.
+     */
+    public void gather(ActorList[] parts)
+    {
+        Arrays.fill(actors, 0, size, null);
+        size = 0;
+        births = 0;
+        deaths = diedAsleep;
+        for(ActorList part : parts) {
+            for(int i = 0; i < part.size; i++) {
+                Actor actor = part.actors[i];
+                if(!park(actor)) {
+                    add(actor);
+                }
+            }
+            births += part.births;
+            deaths += part.deaths;
+        }
+    }
+
+    /**
+     * Remove the actors that are no longer alive, and add some newborns
+     * at the end. This finishes a step in which the actors acted by
+     * some other means than act.
+     * @param born The actors born during the step.
+     */
+    public void sweep(List<Actor> born)
+    {
+        ActorPool pool = ActorPool.get();
+        int kept = 0;
+        for(int i = 0; i < size; i++) {
+            Actor actor = actors[i];
+            if(actor.isAlive()) {
+                if(!park(actor)) {
+                    actors[kept++] = actor;
+                }
+            }
+            else {
+                pool.recycle(actor);
+            }
+        }
+        Arrays.fill(actors, kept, size, null);
+        deaths = size - kept + diedAsleep;
+        size = kept;
+        births = born.size();
+        for(Actor newborn : born) {
+            add(newborn);
+        }
+    }
+
+    /**
+     * Remove every actor, awake or asleep.
+     */
+    public void clear()
+    {
+        Arrays.fill(actors, 0, size, null);
+        size = 0;
+        births = 0;
+        deaths = 0;
+        diedAsleep = 0;
+        // A new run counts its steps from the start.
+        clock = 0;
+        for(int change = 0; change < Change.COUNT; change++) {
+            waitSets[change].clear();
+        }
+        see();
+    }
+
+    /**
+     * Take note of how many times each change has been fired, so that
+     * only later changes wake the actors.
+     */
+    private void see()
+    {
+        if(changes != null) {
+            for(int change = 0; change < Change.COUNT; change++) {
+                seen[change] = changes.getFired(change);
+            }
+        }
+    }
+
+    /**
+     * Put an actor to sleep if it has nothing to do for a while.
+     * @param actor The actor, which has just had its turn.
+     * @return true if the actor is asleep, and so not to be kept awake.
+     */
+    private boolean park(Actor actor)
+    {
+        if(changes == null || !actor.isAlive()) {
+            return false;
+        }
+        int steps = actor.sleep(WAIT_STEPS - 1);
+        if(steps <= 0) {
+            return false;
+        }
+        waitSets[actor.getAwaitedChange()].add(actor, clock, steps);
+        return true;
+    }
+
+    /**
+     * Return the actor at a position in the list.
+     * @param index The position, from 0 to size() - 1.
+     * @return The actor.
+     */
+    public Actor get(int index)
+    {
+        return actors[index];
+    }
+
+    /**
+     * @return The number of awake actors.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The number of sleeping actors.
+     */
+    public int getSleepingCount()
+    {
+        int sleeping = 0;
+        for(WaitSet waitSet : waitSets) {
+            sleeping += waitSet.size();
+        }
+        return sleeping;
+    }
+
+    /**
+     * @return The number of actors born during the last step.
+     */
+    public int getBirths()
+    {
+        return births;
+    }
+
+    /**
+     * @return The number of actors removed during the last step.
+     */
+    public int getDeaths()
+    {
+        return deaths;
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dead actors kept for reuse as newborns, so that births and deaths do
+ * not make garbage. An actor is recycled once it has been removed from
+ * both the field and the list of actors (see ActorList), and taken out
+ * again by the species' obtain method, which brings it back to life in
+ * the same state as a newborn made with randomAge false.
+ *
+ * Only the species that are born during a run are pooled. Each thread
+ * has its own pool, so actors acting at once in different strips of
+ * the field do not contend for it; a dead actor may be reborn on
+ * another thread than the one it died on.
+ *
+ * The pools are emptied when a simulation starts (see drain), or the
+ * dead of every earlier run would be kept for as long as the threads
+ * live.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class ActorPool
+{
+    // The species set of the actors that are pooled.
+    private static final int POOLED = Species.bit(Species.SHARK) | Species.bit(Species.SHRIMP)
+        | Species.bit(Species.OTTER) | Species.bit(Species.PLANT);
+    // The pool of each thread.
+    private static final ThreadLocal<ActorPool> pools = ThreadLocal.withInitial(ActorPool::new);
+    // Counts the calls to drain; a pool older than this is emptied.
+    private static final AtomicInteger drains = new AtomicInteger();
+
+    // The dead actors of each species, indexed by species code.
+    private Actor[][] free;
+    // The number of dead actors of each species.
+    private int[] counts;
+    // The number of calls to drain when the pool was last emptied.
+    private int drained;
+
+    /**
+     * Create an empty pool.
+     */
+    private ActorPool()
+    {
+        free = new Actor[Species.MAX_SPECIES][];
+        counts = new int[Species.MAX_SPECIES];
+        empty();
+    }
+
+    /**
+     * Return the pool of the current thread.
+     * @return The pool.
+     */
+    public static ActorPool get()
+    {
+        ActorPool pool = pools.get();
+        if(pool.drained != drains.get()) {
+            pool.empty();
+        }
+        return pool;
+    }
+
+    /**
+     * Empty the pools of all threads, letting the garbage collector have
+     * the actors in them. Each pool is emptied the next time its thread
+     * asks for it.
+     */
+    public static void drain()
+    {
+        drains.incrementAndGet();
+    }
+
+    /**
+     * Drop the actors in the pool, and shrink it to its first size.
+     */
+    private void empty()
+    {
+        drained = drains.get();
+        for(int code = 0; code < Species.MAX_SPECIES; code++) {
+            if((POOLED & Species.bit(code)) != 0) {
+                free[code] = new Actor[256];
+            }
+            counts[code] = 0;
+        }
+    }
+
+    /**
+     * Keep a dead actor for reuse. Actors of species that are not
+     * pooled are left to the garbage collector.
+     * @param actor The actor, which must be dead and no longer in the
+     *              field or in any list of actors.
+     */
+    public void recycle(Actor actor)
+    {
+        int code = Species.codeOf(actor);
+        Actor[] stack = free[code];
+        if(stack == null) {
+            return;
+        }
+        int count = counts[code];
+        if(count == stack.length) {
+            stack = Arrays.copyOf(stack, count * 2);
+            free[code] = stack;
+        }
+        stack[count] = actor;
+        counts[code] = count + 1;
+    }
+
+    /**
+     * Take a dead actor out of the pool. The caller must bring it back
+     * to life before use.
+     * @param code The species code of the actor wanted.
+     * @return A dead actor of the species, or null if there are none.
+     */
+    public Actor take(int code)
+    {
+        int count = counts[code];
+        if(count == 0) {
+            return null;
+        }
+        Actor[] stack = free[code];
+        Actor actor = stack[--count];
+        stack[count] = null;
+        counts[code] = count;
+        return actor;
+    }
+
+    /**
+     * Return the number of dead actors of a species in the pool.
+     * @param code The species code.
+     * @return The number of pooled actors.
+     */
+    public int size(int code)
+    {
+        return counts[code];
+    }
+}
@@ -0,0 +1,158 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * A check that a simulation allocates next to nothing per step once it
+ * has settled, so that the garbage collector has nothing to do. A
+ * simulation is run on each kind of field, first for some steps to let
+ * the population settle and the pools (see ActorPool) fill, and then
+ * for some more while the bytes allocated by every thread and the
+ * number of garbage collections are counted.
+ *
+ * What a settled step still allocates comes from growth: a species
+ * whose births outnumber its deaths needs new actors, as the pool only
+ * holds the dead, and the arrays of ActorList and WaitSet grow now and
+ * then to hold more actors. Such allocation dies away as the population
+ * levels off. With several threads a little more is allocated, because
+ * each thread has a pool of its own and a strip is not always stepped
+ * by the same thread, so one thread's pool can run dry while another's
+ * fills. Tiled and off-heap fields only keep shared locations for some
+ * cells (see TiledField and OffHeapField), and make the others afresh.
+ *
+ * Run from the command line, all arguments optional:
+ *   java AllocationCheck [-size N] [-field dense|tiled|offheap]
+ *                        [-threads N] [-warmup N] [-steps N] [-max BYTES]
+ * It prints the mean and largest number of bytes allocated per step for
+ * each field, and exits with status 1 if any mean is above the maximum
+ * (4096 bytes unless given).
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class AllocationCheck
+{
+    // The kinds of field checked unless one is chosen.
+    private static final String[] FIELDS = {"dense", "tiled", "offheap"};
+    // Counts the bytes allocated by each thread.
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Run the check.
+     * @param args The arguments, as described above.
+     */
+    public static void main(String[] args)
+    {
+        int size = 300;
+        String[] fields = FIELDS;
+        int threads = 1;
+        int warmup = 400;
+        int steps = 200;
+        long max = 4096;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "-field":
+                    fields = new String[] {args[++i]};
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "-steps":
+                    steps = Integer.parseInt(args[++i]);
+                    break;
+                case "-max":
+                    max = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        boolean passed = true;
+        for(String kind : fields) {
+            Simulator simulator = new Simulator(makeField(kind, size), true);
+            simulator.setThreads(threads);
+            try {
+                simulator.simulate(warmup);
+                // The threads of the simulation have all started by now.
+                long[] ids = THREADS.getAllThreadIds();
+                // Reading the counts allocates an array, which is left out.
+                long overhead = -getAllocatedBytes(ids) + getAllocatedBytes(ids);
+                long most = 0;
+                long total = 0;
+                long collections = getCollectionCount();
+                for(int step = 0; step < steps; step++) {
+                    long before = getAllocatedBytes(ids);
+                    simulator.simulateOneStep();
+                    long bytes = Math.max(0, getAllocatedBytes(ids) - before - overhead);
+                    total += bytes;
+                    most = Math.max(most, bytes);
+                }
+                collections = getCollectionCount() - collections;
+                long mean = total / steps;
+                System.out.println(kind + " size=" + size + " threads=" + threads
+                                   + " bytes/step mean=" + mean + " max=" + most
+                                   + " collections=" + collections);
+                passed &= mean <= max;
+            }
+            finally {
+                simulator.setThreads(1);
+            }
+        }
+        if(!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Make a square field of a given kind.
+     * @param kind "dense", "tiled" or "offheap".
+     * @param size The depth and width of the field.
+     * @return The field.
+     */
+    private static Field makeField(String kind, int size)
+    {
+        switch(kind) {
+            case "dense":
+                return new Field(size, size);
+            case "tiled":
+                return new TiledField(size, size);
+            case "offheap":
+                return new OffHeapField(size, size);
+            default:
+                throw new IllegalArgumentException("Unknown field: " + kind);
+        }
+    }
+
+    /**
+     * Return the number of bytes allocated so far by some threads.
+     * @param ids The ids of the threads.
+     * @return The number of bytes.
+     */
+    private static long getAllocatedBytes(long[] ids)
+    {
+        long total = 0;
+        for(long bytes : THREADS.getThreadAllocatedBytes(ids)) {
+            // A thread that has ended meanwhile is shown as -1.
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of garbage collections so far.
+     */
+    private static long getCollectionCount()
+    {
+        long total = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionCount());
+        }
+        return total;
+    }
+}
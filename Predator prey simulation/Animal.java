@@ -1,6 +1,6 @@
 import java.util.List;
 import java.util.Random;
-import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A class representing shared characteristics of animals.
@@ -27,8 +27,9 @@ public abstract class Animal implements Actor
     private boolean isInfected;
     // Whether the infection will kill an animal or not.
     private boolean infectionKills;
-    // The total number of infected animals.
-    private static int numberOfInfected;
+    // The total number of infected animals. Animals in different
+    // strips of the field may act at once, so the total is atomic.
+    private static final AtomicInteger numberOfInfected = new AtomicInteger();
     // The probability of an animal infecting another one.
     private static final double INFECTION_PROBABILITY = 0.12;
 
@@ -40,17 +41,32 @@ public abstract class Animal implements Actor
      * @param foodLevel The food gained by eating an animal.
      */
     public Animal(Field field, Location location, int foodLevel)
+    {
+        this.foodLevel = foodLevel;
+        rebirth(field, location);
+    }
+
+    /**
+     * Bring this animal to life at a location, with a new sex and
+     * infection. A dead animal taken from the ActorPool is reborn in
+     * this way, drawing the same random numbers as a new one.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     */
+    protected final void rebirth(Field field, Location location)
     {
         alive = true;
         this.field = field;
-        setLocation(location);
-        this.foodLevel = foodLevel;
-        Random random = new Random();
+        // An animal that died on its way to a cell may still have it as
+        // its location, but was never placed there.
+        this.location = null;
+        Random random = Randomizer.getRandom();
         isMale = (random.nextInt(2) == 0) ? true : false; 
         isInfected = (random.nextInt(5) < 2) ? true : false;
         infectionKills = (random.nextInt(4) == 0) ? true : false;
-        numberOfInfected = 0;
-
+        numberOfInfected.set(0);
+        // Placed last so that the field sees the animal's sex.
+        setLocation(location);
     }
 
     /**
@@ -60,6 +76,124 @@ public abstract class Animal implements Actor
      */
     abstract public void act(List<Actor> newAnimals);
 
+    /**
+     * Create a newborn of this animal's species.
+     * @param location Where the newborn is placed.
+     * @return The newborn.
+     */
+    abstract protected Animal newborn(Location location);
+
+    /**
+     * Carry out the plan made for a synchronous step: give birth into
+     * the cells that were won, then move into the target cell if it was
+     * won, eating whatever was there. Anything eaten has already been
+     * removed from the field.
+     * @param intent The plan.
+     * @param newAnimals A list to receive newly born animals.
+     */
+    public void commit(Intent intent, List<Actor> newAnimals)
+    {
+        if(location == null) {
+            // Died while planning, or was eaten.
+            return;
+        }
+        for(int b = 0; b < intent.getBirthCount(); b++) {
+            if(intent.isBirthWon(b)) {
+                newAnimals.add(newborn(field.getLocation(intent.getBirth(b))));
+            }
+        }
+        if(intent.isOvercrowded()) {
+            setDead();
+        }
+        else if(intent.isTargetWon()) {
+            int food = intent.getFood();
+            if(food == Species.PLASTIC) {
+                setDead();
+            }
+            else {
+                if(food != Species.EMPTY) {
+                    eaten(food);
+                }
+                setLocation(field.getLocation(intent.getTarget()));
+            }
+        }
+    }
+
+    /**
+     * Take the food value of something eaten. By default eating
+     * does not change the animal.
+     * @param food The species code of what was eaten.
+     */
+    protected void eaten(int food)
+    {
+    }
+
+    /**
+     * Plan births into free cells next to this animal.
+     * @param intent Receives the plan.
+     * @param births The number of births wanted.
+     */
+    protected void planBirths(Intent intent, int births)
+    {
+        NeighbourCursor it = field.neighbours(location, field.freeMask(location));
+        for(int b = 0; b < births && it.hasNext(); b++) {
+            intent.addBirth(it.next());
+        }
+    }
+
+    /**
+     * Plan a move to a neighbouring cell, as act does: into a cell
+     * holding food if there is one, and otherwise into a free cell not
+     * already planned for a birth. With nowhere to go the animal will
+     * die of overcrowding.
+     * @param intent Receives the plan.
+     * @param food The species set of what the animal will eat.
+     */
+    protected void planMove(Intent intent, int food)
+    {
+        NeighbourCursor it = field.neighbours(location, field.speciesMask(location, food));
+        if(it.hasNext()) {
+            int target = it.next();
+            intent.setTarget(target, field.getSpeciesCode(target));
+            return;
+        }
+        it = field.neighbours(location, field.freeMask(location));
+        while(it.hasNext()) {
+            int target = it.next();
+            if(!intent.uses(target)) {
+                intent.setTarget(target, Species.EMPTY);
+                return;
+            }
+        }
+        intent.setOvercrowded();
+    }
+
+    /**
+     * An animal moves every step, so it never sleeps.
+     * @param most The most steps it may sleep.
+     * @return 0.
+     */
+    public int sleep(int most)
+    {
+        return 0;
+    }
+
+    /**
+     * @return Change.NONE, as an animal never sleeps.
+     */
+    public int getAwaitedChange()
+    {
+        return Change.NONE;
+    }
+
+    /**
+     * An animal never sleeps, so there is nothing to catch up on.
+     * @param steps The number of steps it slept through.
+     */
+    public void wake(int steps)
+    {
+    }
+
     /**
      * Check whether the animal is male or not.
      * @return true if the animal is male.
@@ -91,7 +225,7 @@ public abstract class Animal implements Actor
      * Return the animal's location.
      * @return The animal's location.
      */
-    protected Location getLocation()
+    public Location getLocation()
     {
         return location;
     }
@@ -109,22 +243,81 @@ public abstract class Animal implements Actor
      * Indicate that the animal is no longer alive.
      * It is removed from the field.
      */
-    protected void setDead()
+    public void setDead()
     {
+        if(alive) {
+            Census.record(Census.DEATHS, Species.codeOf(this));
+        }
         alive = false;
         if(location != null) {
-            field.clear(location);
+            // The cell may already hold whatever ate the animal.
+            field.release(this, location);
             location = null;
             field = null;
         }
     }
 
+    /**
+     * Leave the current cell for one this animal has already claimed.
+     * If the current cell no longer holds the animal, it was eaten by
+     * an actor on another thread: the claimed cell is given up and the
+     * animal dies.
+     * @param newLocation The claimed cell.
+     * @return true if the animal moved.
+     */
+    protected boolean moveTo(Location newLocation)
+    {
+        if(location != null && !field.release(this, location)) {
+            field.release(this, newLocation);
+            setDead();
+            return false;
+        }
+        location = newLocation;
+        return true;
+    }
+
+    /**
+     * Eat an actor next to this animal by taking its cell. The animal
+     * must then move into the cell with moveTo. When the field is
+     * concurrent the prey may be acting on another thread, so it is
+     * left to find out for itself that it has been eaten.
+     * @param field The field being hunted in, which this animal no
+     *              longer knows if it has just died.
+     * @param prey The actor to eat, or null.
+     * @param where The prey's cell.
+     * @return true if the prey was still there and has been eaten.
+     */
+    protected boolean eat(Field field, Actor prey, Location where)
+    {
+        if(prey == null || !prey.isAlive()) {
+            return false;
+        }
+        if(!alive) {
+            // Killed by plastic earlier in the same hunt: the prey is
+            // still killed, but nothing takes its place.
+            if(!field.release(prey, where)) {
+                return false;
+            }
+        }
+        else if(!field.replace(prey, this, where)) {
+            return false;
+        }
+        if(!field.isConcurrent()) {
+            prey.setDead();
+        }
+        Census.record(Census.PREDATION, Species.codeOf(prey));
+        return true;
+    }
+
     /**
      * Place the animal at the new location in the given field.
      * @param newLocation The animal's new location.
      */
     public void setLocation(Location newLocation)
     {
+        if(Metrics.ENABLED) {
+            Metrics.count(Metrics.SET_LOCATION);
+        }
         if(location != null) {
             field.clear(location);
         }
@@ -141,18 +334,21 @@ public abstract class Animal implements Actor
     protected void spreadInfection()
     {
         if(location != null) {
-            List<Location> adjacent = field.adjacentLocations(getLocation());
-            Iterator<Location> it = adjacent.iterator();
-            Random random = new Random();
+            Location here = getLocation();
+            NeighbourCursor it = field.neighbours(here, field.speciesMask(here, Species.ANIMALS));
+            Random random = Randomizer.getRandom();
             while(it.hasNext()) {
-                Location location = it.next();
-                Object object = field.getObjectAt(location);
-                if(object instanceof Animal) {
-                    Animal animal = (Animal) object;
-                    if(animal.isAlive() && isInfected) {
-                        if(random.nextDouble() <= INFECTION_PROBABILITY) {
-                            animal.startInfection();
-                        }
+                Object occupant = field.getObjectAt(it.nextLocation());
+                if(!(occupant instanceof Animal)) {
+                    // A packed animal, which cannot be infected, or a
+                    // cell changed by another thread since the mask
+                    // was read.
+                    continue;
+                }
+                Animal animal = (Animal) occupant;
+                if(animal.isAlive() && isInfected) {
+                    if(random.nextDouble() <= INFECTION_PROBABILITY) {
+                        animal.startInfection();
                     }
                 }
             }
@@ -192,7 +388,8 @@ public abstract class Animal implements Actor
      */
     protected void incrementInfected()
     {
-        numberOfInfected++;
+        numberOfInfected.incrementAndGet();
+        Census.record(Census.INFECTIONS, Species.codeOf(this));
     }
 
     /**
@@ -200,7 +397,7 @@ public abstract class Animal implements Actor
      */
     protected void resetNumberOfInfected()
     {
-        numberOfInfected = 0;
+        numberOfInfected.set(0);
     }
 
     /**
@@ -208,7 +405,7 @@ public abstract class Animal implements Actor
      */
     public static int getNumberOfInfected()
     {
-        return numberOfInfected;
+        return numberOfInfected.get();
     }
 
     /**
@@ -217,7 +414,7 @@ public abstract class Animal implements Actor
      */
     protected void cureInfection()
     {
-        Random random = new Random();
+        Random random = Randomizer.getRandom();
         if(isInfected) {
             infectionKills = (random.nextInt(11) == 1 ? false : true);
         }
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts of the births, deaths, predation and infections of each
+ * species, for a Recorder to collect after each step. Each thread
+ * counts in a tally of its own, so actors acting at once in different
+ * strips of the field do not contend for the counts; drain adds the
+ * tallies up between steps.
+ *
+ * Like the time and the weather, the counts are shared by the whole
+ * program.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class Census
+{
+    // An actor or packed animal is born, counted by its species.
+    public static final int BIRTHS = 0;
+    // An actor or packed animal dies, of whatever cause.
+    public static final int DEATHS = 1;
+    // An animal or plant is eaten, counted by the species eaten.
+    public static final int PREDATION = 2;
+    // An animal catches an infection.
+    public static final int INFECTIONS = 3;
+    // The number of kinds of event.
+    public static final int EVENTS = 4;
+
+    // The tallies of every thread that has counted anything.
+    private static final List<Census> tallies = new ArrayList<>();
+    // The tally of each thread.
+    private static final ThreadLocal<Census> local = ThreadLocal.withInitial(Census::register);
+
+    // The counts, at event * Species.MAX_SPECIES + code.
+    private int[] counts;
+
+    /**
+     * Create an empty tally.
+     */
+    private Census()
+    {
+        counts = new int[EVENTS * Species.MAX_SPECIES];
+    }
+
+    /**
+     * Count an event.
+     * @param event The kind of event.
+     * @param code The species code of the actor it happened to.
+     */
+    public static void record(int event, int code)
+    {
+        local.get().counts[event * Species.MAX_SPECIES + code]++;
+    }
+
+    /**
+     * Add up the events counted by every thread since the last drain,
+     * and start counting again from zero. It must not be called while
+     * the actors are acting.
+     * @param into The array to add the counts to, at
+     *             event * Species.MAX_SPECIES + code.
+     */
+    public static void drain(int[] into)
+    {
+        synchronized(tallies) {
+            for(Census tally : tallies) {
+                for(int i = 0; i < tally.counts.length; i++) {
+                    into[i] += tally.counts[i];
+                }
+                Arrays.fill(tally.counts, 0);
+            }
+        }
+    }
+
+    /**
+     * Make the tally of a new thread.
+     * @return The tally.
+     */
+    private static Census register()
+    {
+        Census tally = new Census();
+        synchronized(tallies) {
+            tallies.add(tally);
+        }
+        return tally;
+    }
+}
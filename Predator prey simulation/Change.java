@@ -0,0 +1,57 @@
+/**
+ * The changes in the conditions of the simulation that a sleeping
+ * actor can wait for (see Actor.getAwaitedChange). Time and Weather
+ * fire a change when it comes about, and ActorList wakes the actors
+ * waiting for it at the start of the next step they take.
+ *
+ * Each simulation keeps a Change of its own, shared by its time, its
+ * weather and its list of actors, so that the changes of one
+ * simulation never wake the actors of another in the same program.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class Change
+{
+    // No change: the actor sleeps for a number of steps only.
+    public static final int NONE = 0;
+    // The night ends.
+    public static final int DAYBREAK = 1;
+    // It stops raining.
+    public static final int RAIN_STOPS = 2;
+    // It stops being sunny.
+    public static final int SUN_GOES = 3;
+    // The number of changes, including NONE.
+    public static final int COUNT = 4;
+
+    // The number of times each change has come about.
+    private int[] fired;
+
+    /**
+     * Create the changes of a simulation, none of which has come about.
+     */
+    public Change()
+    {
+        fired = new int[COUNT];
+    }
+
+    /**
+     * Record that a change has come about.
+     * @param change The change.
+     */
+    public void fire(int change)
+    {
+        fired[change]++;
+    }
+
+    /**
+     * Return how many times a change has come about. A waiting actor
+     * is woken when this number moves on.
+     * @param change The change.
+     * @return The number of times it has been fired.
+     */
+    public int getFired(int change)
+    {
+        return fired[change];
+    }
+}
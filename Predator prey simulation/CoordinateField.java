@@ -0,0 +1,446 @@
+import java.util.Objects;
+
+/**
+ * A field whose storage is addressed by row and column rather than by
+ * a packed index into flat arrays. Subclasses provide the storage by
+ * implementing the row and column methods and the neighbour masks;
+ * every other Field method is built on those. Their place and clear
+ * methods must do nothing while the field is frozen (see setFrozen).
+ *
+ * The packed-index methods only work while depth * width fits in an
+ * int. Larger fields must be addressed by Location or by row and column.
+ * Unless a subclass keeps shared locations, a new Location is created
+ * each time one is asked for, so locations should be compared with equals.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public abstract class CoordinateField extends Field
+{
+    /**
+     * Represent a field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    protected CoordinateField(int depth, int width)
+    {
+        super(depth, width, false);
+    }
+
+    /**
+     * Empty the field.
+     */
+    public abstract void clear();
+
+    /**
+     * Clear the given row and column.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public abstract void clear(int row, int col);
+
+    /**
+     * Place an animal at the given location.
+     * If there is already an animal at the location it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public abstract void place(Object animal, int row, int col);
+
+    /**
+     * Return the animal at the given location, if any.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The animal at the given location, or null if there is none.
+     */
+    public abstract Object getObjectAt(int row, int col);
+
+    /**
+     * Return the species code of the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The code of the cell's occupant, or Species.EMPTY.
+     */
+    public abstract int getSpeciesCode(int row, int col);
+
+    /**
+     * Return the directions from a location that lead to a neighbour
+     * holding one of the given species.
+     * @param location The location.
+     * @param species The set of species to look for.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public abstract int speciesMask(Location location, int species);
+
+    /**
+     * Return the directions from a location that lead to a neighbour
+     * holding a male animal.
+     * @param location The location.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public abstract int maleMask(Location location);
+
+    /**
+     * Return the directions from a location that lead to an empty cell.
+     * @param location The location.
+     * @return A mask with one bit set for each free direction.
+     */
+    public abstract int freeMask(Location location);
+
+    /**
+     * Clear the given location.
+     * @param location The location to clear.
+     */
+    public void clear(Location location)
+    {
+        clear(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Clear the cell with the given index.
+     * @param index The packed index of the cell to clear.
+     */
+    public void clear(int index)
+    {
+        clear(getRow(index), getCol(index));
+    }
+
+    /**
+     * Place an animal at the given location.
+     * If there is already an animal at the location it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param location Where to place the animal.
+     */
+    public void place(Object animal, Location location)
+    {
+        place(animal, location.getRow(), location.getCol());
+    }
+
+    /**
+     * Place an animal in the cell with the given index.
+     * If there is already an animal in the cell it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param index The packed index of the cell.
+     */
+    public void place(Object animal, int index)
+    {
+        place(animal, getRow(index), getCol(index));
+    }
+
+    /**
+     * Replace the occupant of a cell only if it is the expected one.
+     * @param expected The expected occupant, or null for an empty cell.
+     * @param animal The new occupant, or null to empty the cell.
+     * @param location The cell.
+     * @return true if the occupant was replaced.
+     */
+    public boolean replace(Object expected, Object animal, Location location)
+    {
+        if(isFrozen() || getObjectAt(location) != expected) {
+            return false;
+        }
+        if(animal == null) {
+            clear(location);
+        }
+        else {
+            place(animal, location);
+        }
+        return true;
+    }
+
+    /**
+     * Move an animal into a free cell next to a location.
+     * @param animal The animal to place. The caller must still leave
+     *               its old cell.
+     * @param location The location.
+     * @return The location the animal now holds, or null if there is
+     *         no free cell or the field is frozen.
+     */
+    public Location claimFreeAdjacentLocation(Object animal, Location location)
+    {
+        if(isFrozen()) {
+            return null;
+        }
+        Location free = freeAdjacentLocation(location);
+        if(free != null) {
+            place(animal, free);
+        }
+        return free;
+    }
+
+    /**
+     * A field addressed by row and column cannot be changed by several
+     * threads at once outside their own strips.
+     * @param concurrent Whether threads may change any cell.
+     * @throws UnsupportedOperationException if concurrent is true.
+     */
+    public void setConcurrent(boolean concurrent)
+    {
+        if(concurrent) {
+            throw new UnsupportedOperationException(
+                "This field cannot be changed by several threads at once.");
+        }
+    }
+
+    /**
+     * Return the animal at the given location, if any.
+     * @param location Where in the field.
+     * @return The animal at the given location, or null if there is none.
+     */
+    public Object getObjectAt(Location location)
+    {
+        return getObjectAt(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Return the animal in the cell with the given index, if any.
+     * @param index The packed index of the cell.
+     * @return The animal in the cell, or null if there is none.
+     */
+    public Object getObjectAt(int index)
+    {
+        return getObjectAt(getRow(index), getCol(index));
+    }
+
+    /**
+     * These fields cannot be made concurrent, so no cell is ever in the
+     * middle of a concurrent change.
+     * @param index The packed index of the cell.
+     * @return false.
+     */
+    public boolean isPending(int index)
+    {
+        return false;
+    }
+
+    /**
+     * Return the species code of the given location.
+     * @param location The location.
+     * @return The code of the location's occupant, or Species.EMPTY.
+     */
+    public int getSpeciesCode(Location location)
+    {
+        return getSpeciesCode(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Return the species code of the cell with the given index.
+     * @param index The packed index of the cell.
+     * @return The code of the cell's occupant, or Species.EMPTY.
+     */
+    public int getSpeciesCode(int index)
+    {
+        return getSpeciesCode(getRow(index), getCol(index));
+    }
+
+    /**
+     * Copy the species code of every cell, in packed index order, for
+     * a snapshot of the field. The codes are read a cell at a time.
+     * @param into An array to copy into, or null. A new one is made if
+     *             it is null or the wrong size.
+     * @return The array holding the codes.
+     * @throws ArithmeticException if the field has more cells than an
+     *         array can hold.
+     */
+    public byte[] copySpeciesCodes(byte[] into)
+    {
+        int cells = Math.toIntExact((long) getDepth() * getWidth());
+        if(into == null || into.length != cells) {
+            into = new byte[cells];
+        }
+        int index = 0;
+        for(int row = 0; row < getDepth(); row++) {
+            for(int col = 0; col < getWidth(); col++) {
+                into[index++] = (byte) getSpeciesCode(row, col);
+            }
+        }
+        return into;
+    }
+
+    /**
+     * Return the packed index of the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The index of the cell, row * width + col.
+     * @throws IndexOutOfBoundsException if the cell is outside the field.
+     * @throws ArithmeticException if the index does not fit in an int.
+     */
+    public int index(int row, int col)
+    {
+        checkBounds(row, col);
+        return Math.toIntExact((long) row * getWidth() + col);
+    }
+
+    /**
+     * Check that a cell is inside the field. Subclasses call this
+     * before working out where a cell is kept, so that a column past
+     * the edge cannot address a cell of the next row.
+     * @param row The row.
+     * @param col The column.
+     * @throws IndexOutOfBoundsException if the cell is outside the field.
+     */
+    protected void checkBounds(int row, int col)
+    {
+        Objects.checkIndex(row, getDepth());
+        Objects.checkIndex(col, getWidth());
+    }
+
+    /**
+     * Return the packed index of the given location.
+     * @param location The location.
+     * @return The index of the location's cell.
+     * @throws ArithmeticException if the index does not fit in an int.
+     */
+    public int index(Location location)
+    {
+        return index(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Return the location of the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The location of the cell.
+     */
+    public Location getLocation(int row, int col)
+    {
+        return new Location(row, col);
+    }
+
+    /**
+     * Return the location of the cell with the given index.
+     * @param index The packed index of a cell.
+     * @return The location of the cell.
+     */
+    public Location getLocation(int index)
+    {
+        return getLocation(getRow(index), getCol(index));
+    }
+
+    /**
+     * Find the nearest location to the given one, within a radius, that
+     * holds one of the given species. This version visits the cells in
+     * rings of growing distance; subclasses with a faster way to skip
+     * empty areas should override it.
+     * @param location The centre of the search.
+     * @param radius The furthest distance to look.
+     * @param species The set of species to look for.
+     * @return The nearest matching location, or null if there is none.
+     */
+    public Location query(Location location, int radius, int species)
+    {
+        species &= ~Species.bit(Species.EMPTY);
+        int row = location.getRow();
+        int col = location.getCol();
+        radius = Math.min(radius, Math.max(getDepth(), getWidth()));
+        for(int distance = 1; distance <= radius; distance++) {
+            int top = row - distance;
+            int bottom = row + distance;
+            for(int r = Math.max(0, top); r <= Math.min(getDepth() - 1, bottom); r++) {
+                // Inside the top and bottom rows of the ring, only the
+                // cells at either end are on the ring.
+                boolean edge = r == top || r == bottom;
+                for(int c = col - distance; c <= col + distance; c += edge ? 1 : 2 * distance) {
+                    if(c >= 0 && c < getWidth() && (species & (1 << getSpeciesCode(r, c))) != 0) {
+                        return getLocation(r, c);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count the cells within a radius of a location that hold one of
+     * the given species, not counting the location itself.
+     * @param location The centre of the search.
+     * @param radius The furthest distance to look.
+     * @param species The set of species to look for.
+     * @return The number of matching cells.
+     */
+    public int count(Location location, int radius, int species)
+    {
+        species &= ~Species.bit(Species.EMPTY);
+        int row = location.getRow();
+        int col = location.getCol();
+        int total = 0;
+        for(int r = Math.max(0, row - radius); r <= Math.min(getDepth() - 1, row + radius); r++) {
+            for(int c = Math.max(0, col - radius); c <= Math.min(getWidth() - 1, col + radius); c++) {
+                if((species & (1 << getSpeciesCode(r, c))) != 0 && (r != row || c != col)) {
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Return the location next to the given one in the given direction.
+     * The direction must lead to a cell inside the grid.
+     * @param location The location.
+     * @param direction The direction, from 0 to DIRECTIONS - 1.
+     * @return The adjacent location.
+     */
+    public Location adjacentLocation(Location location, int direction)
+    {
+        return getLocation(location.getRow() + ROW_STEPS[direction],
+                           location.getCol() + COL_STEPS[direction]);
+    }
+
+    /**
+     * Return the directions from a location that lead to a cell in the grid.
+     * @param location The location.
+     * @return A mask with one bit set for each direction inside the grid.
+     */
+    public int adjacentMask(Location location)
+    {
+        return directionsInside(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Return the directions from a cell that lead to a cell in the grid.
+     * @param index The packed index of the cell.
+     * @return A mask with one bit set for each direction inside the grid.
+     */
+    public int adjacentMask(int index)
+    {
+        return directionsInside(getRow(index), getCol(index));
+    }
+
+    /**
+     * Return the directions from a cell that lead to a neighbour
+     * holding one of the given species.
+     * @param index The packed index of the cell.
+     * @param species The set of species to look for.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int speciesMask(int index, int species)
+    {
+        return speciesMask(getLocation(index), species);
+    }
+
+    /**
+     * Return the directions from a cell that lead to a neighbour
+     * holding a male animal.
+     * @param index The packed index of the cell.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int maleMask(int index)
+    {
+        return maleMask(getLocation(index));
+    }
+
+    /**
+     * Return the directions from a cell that lead to an empty cell.
+     * @param index The packed index of the cell.
+     * @return A mask with one bit set for each free direction.
+     */
+    public int freeMask(int index)
+    {
+        return freeMask(getLocation(index));
+    }
+}
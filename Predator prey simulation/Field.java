@@ -1,25 +1,131 @@
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.Objects;
 
 /**
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single animal.
  * 
+ * Cells are held in a single flat array and can be addressed by a
+ * packed index (row * width + col) as well as by Location. The
+ * index-based methods do not create any objects.
+ * 
+ * The neighbours of every cell are worked out once, when the field is
+ * created: each cell has a mask of the directions that stay inside the
+ * grid, and each direction has a fixed index offset.
+ * 
+ * The field also owns one Location object for each cell. Every location
+ * it hands out is one of these shared objects, so no locations need to
+ * be created once the field exists, and two locations from the same
+ * field refer to the same cell exactly when they are ==.
+ * 
+ * For each species there is a bit layer with one bit per cell, and a
+ * further layer marks the cells holding male animals. They are kept up
+ * to date by place and clear, so asking which neighbours of a cell hold
+ * a given set of species only needs a few word operations. A parallel
+ * grid holds the species code of every cell, so a caller can find out
+ * what is in a cell without touching the object there.
+ * 
+ * Each cell also keeps a mask of its free neighbours, updated whenever
+ * a cell is filled or emptied, so finding a free adjacent location does
+ * not have to look at the neighbours at all.
+ * 
+ * For searches further than the adjacent cells, the field is divided
+ * into square blocks and the number of each species in every block is
+ * kept. A search within a radius skips the blocks that hold none of the
+ * species it wants and reads the bit layers of the others a row at a
+ * time, so its cost depends on the number of blocks rather than cells.
+ * 
+ * Different threads may update the field at the same time, as long as
+ * each works on its own strip of rows and no two strips being worked on
+ * are next to each other (see getStripUnit). Each thread scans
+ * neighbours with its own cursor.
+ * 
+ * In concurrent mode (see setConcurrent) any thread may change any
+ * cell. A cell is only ever changed by compare-and-set, from the
+ * occupant the caller expects to the one it wants, so two actors can
+ * never both take the same cell: the claim methods report whether the
+ * caller won, and a loser tries its next choice. While a cell is being
+ * changed it holds a marker, so that the bookkeeping of one change is
+ * finished before the next change of that cell starts; the bookkeeping
+ * itself is updated with atomic operations. The masks are then only
+ * hints, which a claim may find out of date.
+ * 
+ * This class keeps every cell in memory. Subclasses can provide other
+ * storage (see TiledField) by using the protected constructor and
+ * overriding the methods that touch the cells; the location-based
+ * methods, such as freeAdjacentLocation, are built on those.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
 public class Field
 {
-    // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
+    // The number of directions from a cell to its neighbours.
+    public static final int DIRECTIONS = 8;
+    // Row and column steps for each direction, in reading order.
+    protected static final int[] ROW_STEPS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+    protected static final int[] COL_STEPS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+    // The side of a count block is 2 to the power of BLOCK_SHIFT cells.
+    private static final int BLOCK_SHIFT = 3;
+    // The number of rows and columns in a count block.
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    // The distance between the population counts of two species, so
+    // that threads counting different species do not share a cache line.
+    private static final int POPULATION_STRIDE = 16;
+    // Held by a cell while its occupant is being changed.
+    private static final Object BUSY = new Object();
+    // Held by a cell kept for a newborn that is about to be placed.
+    private static final Object RESERVED = new Object();
+    // Atomic access to the elements of the field's arrays.
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final VarHandle SHORTS = MethodHandles.arrayElementVarHandle(short[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
     
     // The depth and width of the field.
     private int depth, width;
-    // Storage for the animals.
-    private Object[][] field;
+    // Storage for the animals, one slot per cell at row * width + col.
+    private Object[] cells;
+    // The shared location of each cell.
+    private Location[] locations;
+    // The index offset for each direction.
+    private int[] offsets;
+    // For each cell, the directions that lead to a cell in the grid.
+    private byte[] adjacent;
+    // A cursor for visiting neighbours in a random order, one per thread.
+    private ThreadLocal<NeighbourCursor> cursors;
+    // One bit per cell for each species, indexed by species code.
+    // The bit for a cell is at index + 1, so that the cell before
+    // the first one can be read as well.
+    private long[][] layers;
+    // One bit per cell for the cells holding a male animal.
+    private long[] males;
+    // The species code of each cell.
+    private byte[] codes;
+    // For each cell, the directions that lead to an empty cell in the grid.
+    private byte[] free;
+    // The number of count blocks across the field.
+    private int blockCols;
+    // The number of each species in each block, at
+    // block * Species.MAX_SPECIES + code.
+    private short[] blockCounts;
+    // For each block, the set of species with a member in the block.
+    private int[] blockSpecies;
+    // The number of members of each species in the field, at
+    // code * POPULATION_STRIDE.
+    private int[] population;
+    // Whether changes to the cells are being ignored.
+    private volatile boolean frozen;
+    // Whether any thread may change any cell.
+    private boolean concurrent;
+    // The time and weather of the simulation the field belongs to.
+    private Time time;
+    private Weather weather;
 
     /**
      * Represent a field of the given dimensions.
@@ -27,22 +133,75 @@ public class Field
      * @param width The width of the field.
      */
     public Field(int depth, int width)
+    {
+        this(depth, width, true);
+    }
+    
+    /**
+     * Represent a field of the given dimensions, optionally without
+     * allocating storage for the cells. A subclass that passes false
+     * must override every method that reads or writes a cell.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param dense Whether to keep every cell in memory.
+     */
+    protected Field(int depth, int width, boolean dense)
     {
         this.depth = depth;
         this.width = width;
-        field = new Object[depth][width];
+        offsets = new int[DIRECTIONS];
+        for(int d = 0; d < DIRECTIONS; d++) {
+            offsets[d] = ROW_STEPS[d] * width + COL_STEPS[d];
+        }
+        cursors = ThreadLocal.withInitial(() -> new NeighbourCursor(this));
+        population = new int[Species.MAX_SPECIES * POPULATION_STRIDE];
+        if(dense) {
+            allocate();
+        }
     }
     
     /**
-     * Empty the field.
+     * Allocate storage for every cell of the field.
      */
-    public void clear()
+    private void allocate()
     {
+        cells = new Object[depth * width];
+        locations = new Location[depth * width];
+        adjacent = new byte[depth * width];
         for(int row = 0; row < depth; row++) {
             for(int col = 0; col < width; col++) {
-                field[row][col] = null;
+                locations[index(row, col)] = new Location(row, col);
+                adjacent[index(row, col)] = (byte) directionsInside(row, col);
             }
         }
+        // Room for the padding bit on each side, and a spare word so that
+        // three bits can always be read from two adjacent words.
+        int words = (depth * width + 2) / 64 + 2;
+        layers = new long[Species.MAX_SPECIES][words];
+        males = new long[words];
+        codes = new byte[depth * width];
+        free = adjacent.clone();
+        blockCols = (width + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        int blocks = blockCols * ((depth + BLOCK_SIZE - 1) >> BLOCK_SHIFT);
+        blockCounts = new short[blocks * Species.MAX_SPECIES];
+        blockSpecies = new int[blocks];
+    }
+    
+    /**
+     * Empty the field.
+     */
+    public void clear()
+    {
+        Arrays.fill(cells, null);
+        for(long[] layer : layers) {
+            Arrays.fill(layer, 0);
+        }
+        Arrays.fill(males, 0);
+        Arrays.fill(codes, (byte) Species.EMPTY);
+        System.arraycopy(adjacent, 0, free, 0, adjacent.length);
+        Arrays.fill(blockCounts, (short) 0);
+        Arrays.fill(blockSpecies, 0);
+        resetPopulation();
     }
     
     /**
@@ -51,7 +210,27 @@ public class Field
      */
     public void clear(Location location)
     {
-        field[location.getRow()][location.getCol()] = null;
+        clear(index(location));
+    }
+    
+    /**
+     * Clear the cell with the given index.
+     * @param index The packed index of the cell to clear.
+     */
+    public void clear(int index)
+    {
+        if(frozen) {
+            return;
+        }
+        if(concurrent) {
+            put(null, index);
+            return;
+        }
+        Object previous = cells[index];
+        if(previous != null) {
+            cells[index] = null;
+            update(index, previous, null);
+        }
     }
     
     /**
@@ -64,7 +243,17 @@ public class Field
      */
     public void place(Object animal, int row, int col)
     {
-        place(animal, new Location(row, col));
+        place(animal, index(row, col));
+    }
+    
+    /**
+     * Clear the given row and column.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void clear(int row, int col)
+    {
+        clear(index(row, col));
     }
     
     /**
@@ -76,7 +265,203 @@ public class Field
      */
     public void place(Object animal, Location location)
     {
-        field[location.getRow()][location.getCol()] = animal;
+        place(animal, index(location));
+    }
+    
+    /**
+     * Place an animal in the cell with the given index.
+     * If there is already an animal in the cell it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param index The packed index of the cell.
+     */
+    public void place(Object animal, int index)
+    {
+        if(frozen) {
+            return;
+        }
+        if(concurrent) {
+            put(animal, index);
+            return;
+        }
+        Object previous = cells[index];
+        cells[index] = animal;
+        update(index, previous, animal);
+    }
+    
+    /**
+     * Put an animal in a cell only if the cell is empty.
+     * @param animal The animal.
+     * @param location The cell.
+     * @return true if the animal was placed, false if the cell was taken.
+     */
+    public boolean claim(Object animal, Location location)
+    {
+        return replace(null, animal, location);
+    }
+    
+    /**
+     * Empty a cell only if it still holds the given animal.
+     * @param animal The animal.
+     * @param location The cell.
+     * @return true if the cell was emptied, false if it held something else.
+     */
+    public boolean release(Object animal, Location location)
+    {
+        return replace(animal, null, location);
+    }
+    
+    /**
+     * Replace the occupant of a cell only if it is the expected one.
+     * A predator takes the cell of its prey in this way, so that only
+     * one predator can eat it and only while it has not moved away.
+     * @param expected The expected occupant, or null for an empty cell.
+     * @param animal The new occupant, or null to empty the cell.
+     * @param location The cell.
+     * @return true if the occupant was replaced.
+     */
+    public boolean replace(Object expected, Object animal, Location location)
+    {
+        return swap(expected, animal, index(location));
+    }
+    
+    /**
+     * Move an animal into a free cell next to a location. The free
+     * cells are tried in a random order until one is won.
+     * @param animal The animal to place. The caller must still leave
+     *               its old cell.
+     * @param location The location.
+     * @return The location the animal now holds, or null if none
+     *         could be claimed.
+     */
+    public Location claimFreeAdjacentLocation(Object animal, Location location)
+    {
+        int mask = freeMask(location);
+        if(mask == 0) {
+            return null;
+        }
+        NeighbourCursor neighbours = neighbours(location, mask);
+        while(neighbours.hasNext()) {
+            int target = neighbours.next();
+            if(swap(null, animal, target)) {
+                return locations[target];
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Find a free cell next to a location for a newborn. In concurrent
+     * mode the cell is kept, so that no other thread can take it before
+     * the newborn is placed there; the caller must place something in it.
+     * @param location The location.
+     * @return A free location, or null if there is none.
+     */
+    public Location reserveFreeAdjacentLocation(Location location)
+    {
+        if(!concurrent) {
+            return freeAdjacentLocation(location);
+        }
+        return claimFreeAdjacentLocation(RESERVED, location);
+    }
+    
+    /**
+     * Let any thread change any cell, or return to the usual rules.
+     * While the field is concurrent every change of a cell is made
+     * with claim, release or replace, or with place and clear, which
+     * wait for a change already under way.
+     * @param concurrent Whether threads may change any cell.
+     */
+    public void setConcurrent(boolean concurrent)
+    {
+        if(this.concurrent && !concurrent) {
+            // Concurrent changes never remove a species from a block,
+            // so the sets must be worked out again from the counts.
+            for(int block = 0; block < blockSpecies.length; block++) {
+                int present = 0;
+                for(int code = 0; code < Species.MAX_SPECIES; code++) {
+                    if(blockCounts[block * Species.MAX_SPECIES + code] != 0) {
+                        present |= 1 << code;
+                    }
+                }
+                blockSpecies[block] = present;
+            }
+        }
+        this.concurrent = concurrent;
+    }
+    
+    /**
+     * @return Whether any thread may change any cell.
+     */
+    public boolean isConcurrent()
+    {
+        return concurrent;
+    }
+    
+    /**
+     * Replace the occupant of a cell if it is the expected one. In
+     * concurrent mode the cell holds BUSY while the bookkeeping is
+     * updated, so that a later change of the cell cannot overtake it.
+     * @param expected The expected occupant, or null.
+     * @param animal The new occupant, or null.
+     * @param index The packed index of the cell.
+     * @return true if the occupant was replaced.
+     */
+    private boolean swap(Object expected, Object animal, int index)
+    {
+        if(frozen) {
+            return false;
+        }
+        if(!concurrent) {
+            if(cells[index] != expected) {
+                return false;
+            }
+            cells[index] = animal;
+            update(index, expected, animal);
+            return true;
+        }
+        if(!CELLS.compareAndSet(cells, index, expected, BUSY)) {
+            return false;
+        }
+        update(index, expected, animal);
+        CELLS.setRelease(cells, index, animal);
+        return true;
+    }
+    
+    /**
+     * Put an animal in a cell whatever it holds, waiting for any change
+     * of the cell under way on another thread.
+     * @param animal The animal, or null to empty the cell.
+     * @param index The packed index of the cell.
+     */
+    private void put(Object animal, int index)
+    {
+        while(true) {
+            Object previous = CELLS.getAcquire(cells, index);
+            if(previous != BUSY && swap(previous, animal, index)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+    
+    /**
+     * Bring the bookkeeping up to date after a cell's occupant changed.
+     * @param index The packed index of the cell.
+     * @param previous The old occupant, or null.
+     * @param animal The new occupant, or null.
+     */
+    private void update(int index, Object previous, Object animal)
+    {
+        if(previous != null && previous != RESERVED) {
+            clearBits(index);
+        }
+        if(animal != null && animal != RESERVED) {
+            setBits(index, animal);
+        }
+        if((previous == null) != (animal == null)) {
+            setFree(index, animal == null);
+        }
     }
     
     /**
@@ -86,7 +471,21 @@ public class Field
      */
     public Object getObjectAt(Location location)
     {
-        return getObjectAt(location.getRow(), location.getCol());
+        return getObjectAt(index(location));
+    }
+    
+    /**
+     * Return the animal at the given location if it is of the given
+     * species. When the field is concurrent a species code read earlier
+     * may be out of date by the time the cell itself is read.
+     * @param location Where in the field.
+     * @param code The species code the animal should have.
+     * @return The animal, or null if the cell holds no such animal.
+     */
+    public Object getObjectAt(Location location, int code)
+    {
+        Object animal = getObjectAt(location);
+        return animal != null && animal.getClass() == Species.classOf(code) ? animal : null;
     }
     
     /**
@@ -97,7 +496,147 @@ public class Field
      */
     public Object getObjectAt(int row, int col)
     {
-        return field[row][col];
+        return getObjectAt(index(row, col));
+    }
+    
+    /**
+     * Return the animal in the cell with the given index, if any.
+     * @param index The packed index of the cell.
+     * @return The animal in the cell, or null if there is none.
+     */
+    public Object getObjectAt(int index)
+    {
+        if(!concurrent) {
+            return cells[index];
+        }
+        // A cell being changed, or kept for a newborn, is shown as empty.
+        Object animal = CELLS.getAcquire(cells, index);
+        return animal == BUSY || animal == RESERVED ? null : animal;
+    }
+
+    /**
+     * Return whether a cell is in the middle of a concurrent change:
+     * held while its bookkeeping is updated, or kept for a newborn.
+     * No cell should be once the actors of a step have all acted.
+     * @param index The packed index of the cell.
+     * @return true if the cell is being changed or is kept.
+     */
+    public boolean isPending(int index)
+    {
+        Object animal = CELLS.getAcquire(cells, index);
+        return animal == BUSY || animal == RESERVED;
+    }
+    
+    /**
+     * Freeze or thaw the cells. While the field is frozen, clear and
+     * place leave the cells as they are, so that actors planning a
+     * synchronous step all see the field as it was at the start of
+     * the step, even if some of them die while planning.
+     * @param frozen Whether to ignore changes to the cells.
+     */
+    public void setFrozen(boolean frozen)
+    {
+        this.frozen = frozen;
+    }
+    
+    /**
+     * @return Whether changes to the cells are being ignored.
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+    
+    /**
+     * Return the species code of the cell with the given index.
+     * @param index The packed index of the cell.
+     * @return The code of the cell's occupant, or Species.EMPTY.
+     */
+    public int getSpeciesCode(int index)
+    {
+        return codes[index];
+    }
+    
+    /**
+     * Return the species code of the given location.
+     * @param location The location.
+     * @return The code of the location's occupant, or Species.EMPTY.
+     */
+    public int getSpeciesCode(Location location)
+    {
+        return codes[index(location)];
+    }
+    
+    /**
+     * Return the species code of the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The code of the cell's occupant, or Species.EMPTY.
+     */
+    public int getSpeciesCode(int row, int col)
+    {
+        return codes[index(row, col)];
+    }
+    
+    /**
+     * Copy the species code of every cell, in packed index order, for
+     * a snapshot of the field.
+     * @param into An array to copy into, or null. A new one is made if
+     *             it is null or the wrong size.
+     * @return The array holding the codes.
+     */
+    public byte[] copySpeciesCodes(byte[] into)
+    {
+        if(into == null || into.length != codes.length) {
+            into = new byte[codes.length];
+        }
+        System.arraycopy(codes, 0, into, 0, codes.length);
+        return into;
+    }
+    
+    /**
+     * Return the packed index of the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The index of the cell, row * width + col.
+     * @throws IndexOutOfBoundsException if the cell is outside the field.
+     */
+    public int index(int row, int col)
+    {
+        // Without the checks a column past the edge would address a
+        // cell of the next row.
+        return Objects.checkIndex(row, depth) * width + Objects.checkIndex(col, width);
+    }
+    
+    /**
+     * Return the packed index of the given location.
+     * @param location The location.
+     * @return The index of the location's cell.
+     * @throws IndexOutOfBoundsException if the location is outside the field.
+     */
+    public int index(Location location)
+    {
+        return index(location.getRow(), location.getCol());
+    }
+    
+    /**
+     * Return the row of a packed cell index.
+     * @param index The packed index of a cell.
+     * @return The row of the cell.
+     */
+    public int getRow(int index)
+    {
+        return index / width;
+    }
+    
+    /**
+     * Return the column of a packed cell index.
+     * @param index The packed index of a cell.
+     * @return The column of the cell.
+     */
+    public int getCol(int index)
+    {
+        return index % width;
     }
     
     /**
@@ -110,8 +649,13 @@ public class Field
      */
     public Location randomAdjacentLocation(Location location)
     {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        NeighbourCursor neighbours = neighbours(location);
+        if(neighbours.hasNext()) {
+            return neighbours.nextLocation();
+        }
+        else {
+            return location;
+        }
     }
     
     /**
@@ -121,12 +665,14 @@ public class Field
      */
     public List<Location> getFreeAdjacentLocations(Location location)
     {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocations(location);
-        for(Location next : adjacent) {
-            if(getObjectAt(next) == null) {
-                free.add(next);
-            }
+        if(Metrics.ENABLED) {
+            Metrics.count(Metrics.FREE_ADJACENT_LOCATIONS);
+        }
+        int mask = freeMask(location);
+        List<Location> free = new ArrayList<>(Integer.bitCount(mask));
+        NeighbourCursor neighbours = neighbours(location, mask);
+        while(neighbours.hasNext()) {
+            free.add(neighbours.nextLocation());
         }
         return free;
     }
@@ -141,14 +687,51 @@ public class Field
      */
     public Location freeAdjacentLocation(Location location)
     {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocations(location);
-        if(free.size() > 0) {
-            return free.get(0);
-        }
-        else {
+        int mask = freeMask(location);
+        if(mask == 0) {
             return null;
         }
+        return neighbours(location, mask).nextLocation();
+    }
+    
+    /**
+     * Return the number of free locations adjacent to the given one.
+     * @param location The location.
+     * @return The number of empty neighbouring cells.
+     */
+    public int freeAdjacentCount(Location location)
+    {
+        return Integer.bitCount(freeMask(location));
+    }
+    
+    /**
+     * Return the number of free cells next to a cell.
+     * @param index The packed index of the cell.
+     * @return The number of empty neighbouring cells.
+     */
+    public int freeCount(int index)
+    {
+        return Integer.bitCount(freeMask(index));
+    }
+    
+    /**
+     * Return the directions from a cell that lead to an empty cell.
+     * @param index The packed index of the cell.
+     * @return A mask with one bit set for each free direction.
+     */
+    public int freeMask(int index)
+    {
+        return free[index] & 0xFF;
+    }
+    
+    /**
+     * Return the directions from a location that lead to an empty cell.
+     * @param location The location.
+     * @return A mask with one bit set for each free direction.
+     */
+    public int freeMask(Location location)
+    {
+        return freeMask(index(location));
     }
 
     /**
@@ -161,29 +744,309 @@ public class Field
     public List<Location> adjacentLocations(Location location)
     {
         assert location != null : "Null location passed to adjacentLocations";
+        if(Metrics.ENABLED) {
+            Metrics.count(Metrics.ADJACENT_LOCATIONS);
+        }
         // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
+        List<Location> locations = new ArrayList<>(DIRECTIONS);
         if(location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            for(int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
+            // The cursor visits the neighbours in a random order. Several
+            // other methods rely on the list being in a random order.
+            NeighbourCursor neighbours = neighbours(location);
+            while(neighbours.hasNext()) {
+                locations.add(neighbours.nextLocation());
+            }
+        }
+        return locations;
+    }
+    
+    /**
+     * Start a random-order scan of the locations adjacent to the given one.
+     * The cursor belongs to the field and the calling thread and is
+     * reused by every call, so one scan must be finished before the
+     * next is started.
+     * @param location The location.
+     * @return A cursor over the adjacent locations.
+     */
+    public NeighbourCursor neighbours(Location location)
+    {
+        return cursors.get().reset(location, adjacentMask(location));
+    }
+    
+    /**
+     * Start a random-order scan of some of the locations adjacent to
+     * the given one. The cursor belongs to the field and the calling
+     * thread and is reused by every call, so one scan must be finished
+     * before the next is started.
+     * @param location The location.
+     * @param mask The directions to visit, one bit per direction.
+     *             Directions that leave the grid are ignored.
+     * @return A cursor over the adjacent locations.
+     */
+    public NeighbourCursor neighbours(Location location, int mask)
+    {
+        return cursors.get().reset(location, adjacentMask(location) & mask);
+    }
+    
+    /**
+     * Start a random-order scan of the neighbours of a cell.
+     * The cursor belongs to the field and the calling thread and is
+     * reused by every call, so one scan must be finished before the
+     * next is started.
+     * @param index The packed index of the cell.
+     * @return A cursor over the packed indices of the neighbours.
+     */
+    public NeighbourCursor neighbours(int index)
+    {
+        return cursors.get().reset(index, adjacentMask(index));
+    }
+    
+    /**
+     * Start a random-order scan of some of the neighbours of a cell.
+     * The cursor belongs to the field and the calling thread and is
+     * reused by every call, so one scan must be finished before the
+     * next is started.
+     * @param index The packed index of the cell.
+     * @param mask The directions to visit, one bit per direction.
+     *             Directions that leave the grid are ignored.
+     * @return A cursor over the packed indices of the neighbours.
+     */
+    public NeighbourCursor neighbours(int index, int mask)
+    {
+        return cursors.get().reset(index, adjacentMask(index) & mask);
+    }
+    
+    /**
+     * Return the directions from a cell that lead to a cell in the grid.
+     * @param index The packed index of the cell.
+     * @return A mask with one bit set for each direction inside the grid.
+     */
+    public int adjacentMask(int index)
+    {
+        return adjacent[index] & 0xFF;
+    }
+    
+    /**
+     * Return the directions from a location that lead to a cell in the grid.
+     * @param location The location.
+     * @return A mask with one bit set for each direction inside the grid.
+     */
+    public int adjacentMask(Location location)
+    {
+        return adjacentMask(index(location));
+    }
+    
+    /**
+     * Return the directions from a cell that lead to a neighbour
+     * holding one of the given species.
+     * @param index The packed index of the cell.
+     * @param species The set of species to look for.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int speciesMask(int index, int species)
+    {
+        int found = 0;
+        for(int code = 1; code < Species.MAX_SPECIES; code++) {
+            if((species & (1 << code)) != 0) {
+                found |= neighbourBits(layers[code], index);
+            }
+        }
+        return found & adjacent[index];
+    }
+    
+    /**
+     * Return the directions from a location that lead to a neighbour
+     * holding one of the given species.
+     * @param location The location.
+     * @param species The set of species to look for.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int speciesMask(Location location, int species)
+    {
+        return speciesMask(index(location), species);
+    }
+    
+    /**
+     * Return the directions from a cell that lead to a neighbour
+     * holding a male animal.
+     * @param index The packed index of the cell.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int maleMask(int index)
+    {
+        return neighbourBits(males, index) & adjacent[index];
+    }
+    
+    /**
+     * Return the directions from a location that lead to a neighbour
+     * holding a male animal.
+     * @param location The location.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int maleMask(Location location)
+    {
+        return maleMask(index(location));
+    }
+    
+    /**
+     * Find the nearest location to the given one, within a radius, that
+     * holds one of the given species. Distance is the number of steps
+     * between neighbouring cells, so the cells within a radius r form a
+     * square of side 2r + 1. The location itself is never returned.
+     * Of several matches at the same distance, any one may be returned.
+     * @param location The centre of the search.
+     * @param radius The furthest distance to look.
+     * @param species The set of species to look for.
+     * @return The nearest matching location, or null if there is none.
+     */
+    public Location query(Location location, int radius, int species)
+    {
+        int found = nearest(index(location), radius, species);
+        return found < 0 ? null : locations[found];
+    }
+    
+    /**
+     * Return the number of members of a species in the field. The
+     * count is kept up to date as cells change, so this takes no time.
+     * @param code The species code.
+     * @return The number of cells holding the species.
+     */
+    public int getPopulation(int code)
+    {
+        return population[code * POPULATION_STRIDE];
+    }
+    
+    /**
+     * @return The set of species with a member in the field.
+     */
+    public int getSpeciesPresent()
+    {
+        int present = 0;
+        for(int code = 1; code < Species.count(); code++) {
+            if(population[code * POPULATION_STRIDE] > 0) {
+                present |= Species.bit(code);
+            }
+        }
+        return present;
+    }
+    
+    /**
+     * Change the number of members of a species in the field. Every
+     * way of filling or emptying a cell calls this, including those of
+     * subclasses that keep the cells elsewhere. Threads working on
+     * different strips may count the same species at once, so the
+     * update is atomic.
+     * @param code The species code.
+     * @param change The number of members added, or removed if negative.
+     */
+    protected void addPopulation(int code, int change)
+    {
+        INTS.getAndAdd(population, code * POPULATION_STRIDE, change);
+    }
+    
+    /**
+     * Set the number of members of every species to zero, when the
+     * field is emptied.
+     */
+    protected void resetPopulation()
+    {
+        Arrays.fill(population, 0);
+    }
+    
+    /**
+     * Count the cells within a radius of a location that hold one of
+     * the given species, not counting the location itself.
+     * @param location The centre of the search.
+     * @param radius The furthest distance to look.
+     * @param species The set of species to look for.
+     * @return The number of matching cells.
+     */
+    public int count(Location location, int radius, int species)
+    {
+        species &= ~Species.bit(Species.EMPTY);
+        int index = index(location);
+        int row = getRow(index);
+        int col = getCol(index);
+        int top = Math.max(0, row - radius);
+        int bottom = Math.min(depth - 1, row + radius);
+        int left = Math.max(0, col - radius);
+        int right = Math.min(width - 1, col + radius);
+        int total = 0;
+        for(int blockRow = top >> BLOCK_SHIFT; blockRow <= bottom >> BLOCK_SHIFT; blockRow++) {
+            int rowFrom = Math.max(top, blockRow << BLOCK_SHIFT);
+            int rowTo = Math.min(bottom, (blockRow << BLOCK_SHIFT) + BLOCK_SIZE - 1);
+            for(int blockCol = left >> BLOCK_SHIFT; blockCol <= right >> BLOCK_SHIFT; blockCol++) {
+                int block = blockRow * blockCols + blockCol;
+                int present = blockSpecies[block] & species;
+                if(present == 0) {
+                    continue;
+                }
+                int colFrom = Math.max(left, blockCol << BLOCK_SHIFT);
+                int colTo = Math.min(right, (blockCol << BLOCK_SHIFT) + BLOCK_SIZE - 1);
+                if(rowTo - rowFrom == BLOCK_SIZE - 1 && colTo - colFrom == BLOCK_SIZE - 1) {
+                    // The whole block is inside the square.
+                    for(int set = present; set != 0; set &= set - 1) {
+                        int code = Integer.numberOfTrailingZeros(set);
+                        total += blockCounts[block * Species.MAX_SPECIES + code];
+                    }
+                }
+                else {
+                    for(int r = rowFrom; r <= rowTo; r++) {
+                        total += Integer.bitCount(rowBits(present, r * width + colFrom,
+                                                          colTo - colFrom + 1));
                     }
                 }
             }
-            
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
         }
-        return locations;
+        if((species & (1 << codes[index])) != 0) {
+            total--;
+        }
+        return total;
+    }
+    
+    /**
+     * Return the location next to the given one in the given direction.
+     * The direction must lead to a cell inside the grid.
+     * @param location The location.
+     * @param direction The direction, from 0 to DIRECTIONS - 1.
+     * @return The adjacent location.
+     */
+    public Location adjacentLocation(Location location, int direction)
+    {
+        return getLocation(index(location) + offsets[direction]);
+    }
+    
+    /**
+     * Return the neighbour of a cell in the given direction.
+     * The direction must lead to a cell inside the grid.
+     * @param index The packed index of the cell.
+     * @param direction The direction, from 0 to DIRECTIONS - 1.
+     * @return The packed index of the neighbouring cell.
+     */
+    public int neighbour(int index, int direction)
+    {
+        return index + offsets[direction];
+    }
+    
+    /**
+     * Return the shared location of the cell with the given index.
+     * @param index The packed index of a cell.
+     * @return The location of the cell.
+     */
+    public Location getLocation(int index)
+    {
+        return locations[index];
+    }
+    
+    /**
+     * Return the shared location of the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The location of the cell.
+     */
+    public Location getLocation(int row, int col)
+    {
+        return locations[index(row, col)];
     }
 
     /**
@@ -203,4 +1066,339 @@ public class Field
     {
         return width;
     }
+
+    /**
+     * Give the field the time and weather of the simulation it belongs
+     * to, so that the actors in it can tell whether it is night or
+     * raining. A simulation does this whenever it starts a run.
+     * @param time The time of the simulation.
+     * @param weather The weather of the simulation.
+     */
+    public void setConditions(Time time, Weather weather)
+    {
+        this.time = time;
+        this.weather = weather;
+    }
+
+    /**
+     * @return The time of the simulation the field belongs to, or null
+     *         if it has not been given one (see setConditions).
+     */
+    public Time getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return The weather of the simulation the field belongs to, or
+     *         null if it has not been given one (see setConditions).
+     */
+    public Weather getWeather()
+    {
+        return weather;
+    }
+    
+    /**
+     * Tidy the field's storage at the end of a step, when no actor is
+     * changing it. A field that keeps every cell in memory has nothing
+     * to tidy; other kinds of storage (see TiledField) release what
+     * they no longer need.
+     */
+    public void endStep()
+    {
+    }
+    
+    /**
+     * Return the height of the strips of rows that different threads can
+     * update at the same time. The rows are split into strips whose
+     * heights are multiples of this unit, each at least two units high.
+     * Strips that are not next to each other can then be updated at the
+     * same time, because an update reaches at most one row outside its
+     * strip and strips never share a count block or a word of a layer.
+     * @return The unit of strip height in rows, or 0 if the field cannot
+     *         be updated by more than one thread.
+     */
+    public int getStripUnit()
+    {
+        // Each strip has at least a word's worth of cells per unit.
+        int unit = BLOCK_SIZE;
+        while(unit * width < Long.SIZE) {
+            unit += BLOCK_SIZE;
+        }
+        return unit;
+    }
+    
+    /**
+     * Work out which directions from a cell lead to a cell in the grid.
+     * Cells on the edges and in the corners have fewer neighbours.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return A mask with one bit set for each direction inside the grid.
+     */
+    protected int directionsInside(int row, int col)
+    {
+        int mask = 0;
+        for(int d = 0; d < DIRECTIONS; d++) {
+            int nextRow = row + ROW_STEPS[d];
+            int nextCol = col + COL_STEPS[d];
+            if(nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width) {
+                mask |= 1 << d;
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Find the nearest cell to the given one, within a radius, that holds
+     * one of the given species. Blocks are searched in rings of growing
+     * distance from the cell's block, skipping those that hold none of
+     * the species, until no block left can hold a nearer match.
+     * @param index The packed index of the centre cell.
+     * @param radius The furthest distance to look.
+     * @param species The set of species to look for.
+     * @return The packed index of the nearest match, or -1 if there is none.
+     */
+    private int nearest(int index, int radius, int species)
+    {
+        species &= ~Species.bit(Species.EMPTY);
+        int row = getRow(index);
+        int col = getCol(index);
+        int top = Math.max(0, row - radius) >> BLOCK_SHIFT;
+        int bottom = Math.min(depth - 1, row + radius) >> BLOCK_SHIFT;
+        int left = Math.max(0, col - radius) >> BLOCK_SHIFT;
+        int right = Math.min(width - 1, col + radius) >> BLOCK_SHIFT;
+        int blockRow = row >> BLOCK_SHIFT;
+        int blockCol = col >> BLOCK_SHIFT;
+        int rings = Math.max(Math.max(blockRow - top, bottom - blockRow),
+                             Math.max(blockCol - left, right - blockCol));
+        int best = -1;
+        int bestDistance = radius + 1;
+        // Every cell in ring k is more than (k - 1) * BLOCK_SIZE away.
+        for(int ring = 0; ring <= rings && bestDistance > (ring - 1) * BLOCK_SIZE; ring++) {
+            for(int r = Math.max(top, blockRow - ring); r <= Math.min(bottom, blockRow + ring); r++) {
+                // Inside the top and bottom rows of the ring, only the
+                // blocks at either end are on the ring.
+                boolean edge = r == blockRow - ring || r == blockRow + ring;
+                for(int c = blockCol - ring; c <= blockCol + ring; c += edge ? 1 : 2 * ring) {
+                    if(c < left || c > right) {
+                        continue;
+                    }
+                    int block = r * blockCols + c;
+                    int present = blockSpecies[block] & species;
+                    if(present == 0) {
+                        continue;
+                    }
+                    int found = nearestInBlock(block, present, row, col, bestDistance - 1);
+                    if(found >= 0) {
+                        best = found;
+                        bestDistance = Math.max(Math.abs(getRow(found) - row),
+                                                Math.abs(getCol(found) - col));
+                    }
+                }
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Find the nearest cell in a block to the given cell that holds one
+     * of the given species.
+     * @param block The block to search.
+     * @param species The set of species to look for.
+     * @param row The row of the centre cell.
+     * @param col The column of the centre cell.
+     * @param radius The furthest distance to look.
+     * @return The packed index of the nearest match, or -1 if there is none.
+     */
+    private int nearestInBlock(int block, int species, int row, int col, int radius)
+    {
+        int blockTop = (block / blockCols) << BLOCK_SHIFT;
+        int blockLeft = (block % blockCols) << BLOCK_SHIFT;
+        int rowFrom = Math.max(row - radius, blockTop);
+        int rowTo = Math.min(Math.min(row + radius, depth - 1), blockTop + BLOCK_SIZE - 1);
+        int colFrom = Math.max(col - radius, blockLeft);
+        int colTo = Math.min(Math.min(col + radius, width - 1), blockLeft + BLOCK_SIZE - 1);
+        int best = -1;
+        int bestDistance = radius + 1;
+        for(int r = rowFrom; r <= rowTo; r++) {
+            int bits = colTo >= colFrom ? rowBits(species, r * width + colFrom, colTo - colFrom + 1) : 0;
+            while(bits != 0) {
+                int c = colFrom + Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int distance = Math.max(Math.abs(r - row), Math.abs(c - col));
+                if(distance > 0 && distance < bestDistance) {
+                    best = r * width + c;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Read the bits of a run of cells in one row from the layers of
+     * a set of species.
+     * @param species The set of species whose layers are read.
+     * @param index The packed index of the first cell.
+     * @param count The number of cells, at most BLOCK_SIZE.
+     * @return One bit per cell that holds one of the species, lowest first.
+     */
+    private int rowBits(int species, int index, int count)
+    {
+        int word = (index + 1) >>> 6;
+        int shift = (index + 1) & 63;
+        long bits = 0;
+        for(int set = species; set != 0; set &= set - 1) {
+            long[] layer = layers[Integer.numberOfTrailingZeros(set)];
+            long run = layer[word] >>> shift;
+            if(shift + count > 64) {
+                run |= layer[word + 1] << (64 - shift);
+            }
+            bits |= run;
+        }
+        return (int) bits & ((1 << count) - 1);
+    }
+    
+    /**
+     * Return the count block holding a cell.
+     * @param index The packed index of the cell.
+     * @return The index of the block.
+     */
+    private int blockOf(int index)
+    {
+        int row = index / width;
+        int col = index - row * width;
+        return (row >> BLOCK_SHIFT) * blockCols + (col >> BLOCK_SHIFT);
+    }
+    
+    /**
+     * Tell the neighbours of a cell that it has been filled or emptied.
+     * The direction from a neighbour back to the cell is the opposite
+     * of the direction from the cell to the neighbour, which in reading
+     * order is (DIRECTIONS - 1 - direction).
+     * @param index The packed index of the cell.
+     * @param empty Whether the cell is now empty.
+     */
+    private void setFree(int index, boolean empty)
+    {
+        int mask = adjacent[index];
+        for(int d = 0; d < DIRECTIONS; d++) {
+            if((mask & (1 << d)) != 0) {
+                int next = index + offsets[d];
+                int back = 1 << (DIRECTIONS - 1 - d);
+                if(concurrent) {
+                    if(empty) {
+                        BYTES.getAndBitwiseOr(free, next, (byte) back);
+                    }
+                    else {
+                        BYTES.getAndBitwiseAnd(free, next, (byte) ~back);
+                    }
+                }
+                else if(empty) {
+                    free[next] |= back;
+                }
+                else {
+                    free[next] &= ~back;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Set the species code and layer bits for an animal placed in a cell.
+     * @param index The packed index of the cell.
+     * @param animal The animal.
+     */
+    private void setBits(int index, Object animal)
+    {
+        int code = Species.codeOf(animal);
+        codes[index] = (byte) code;
+        int block = blockOf(index);
+        int count = block * Species.MAX_SPECIES + code;
+        long[] layer = layers[code];
+        int bit = index + 1;
+        boolean male = Species.isMale(animal);
+        addPopulation(code, 1);
+        if(concurrent) {
+            if((short) SHORTS.getAndAdd(blockCounts, count, (short) 1) == 0) {
+                INTS.getAndBitwiseOr(blockSpecies, block, 1 << code);
+            }
+            LONGS.getAndBitwiseOr(layer, bit >>> 6, 1L << bit);
+            if(male) {
+                LONGS.getAndBitwiseOr(males, bit >>> 6, 1L << bit);
+            }
+            return;
+        }
+        if(blockCounts[count]++ == 0) {
+            blockSpecies[block] |= 1 << code;
+        }
+        layer[bit >>> 6] |= 1L << bit;
+        if(male) {
+            males[bit >>> 6] |= 1L << bit;
+        }
+    }
+    
+    /**
+     * Clear the species code and layer bits of a cell whose
+     * occupant is leaving.
+     * @param index The packed index of the cell.
+     */
+    private void clearBits(int index)
+    {
+        int code = codes[index];
+        int block = blockOf(index);
+        int count = block * Species.MAX_SPECIES + code;
+        long[] layer = layers[code];
+        codes[index] = (byte) Species.EMPTY;
+        int bit = index + 1;
+        addPopulation(code, -1);
+        if(concurrent) {
+            // The block keeps the species in its set until the field
+            // stops being concurrent.
+            SHORTS.getAndAdd(blockCounts, count, (short) -1);
+            LONGS.getAndBitwiseAnd(layer, bit >>> 6, ~(1L << bit));
+            LONGS.getAndBitwiseAnd(males, bit >>> 6, ~(1L << bit));
+            return;
+        }
+        if(--blockCounts[count] == 0) {
+            blockSpecies[block] &= ~(1 << code);
+        }
+        layer[bit >>> 6] &= ~(1L << bit);
+        males[bit >>> 6] &= ~(1L << bit);
+    }
+    
+    /**
+     * Gather the bits of the eight neighbours of a cell from a layer
+     * into a direction mask. Bits for directions that leave the grid
+     * are meaningless and must be masked off by the caller.
+     * @param layer The layer to read.
+     * @param index The packed index of the cell.
+     * @return A mask with one bit for each direction.
+     */
+    private int neighbourBits(long[] layer, int index)
+    {
+        // Three bits from each of the rows above, at and below the cell.
+        // With the padding bit, the bit before the cell is at index.
+        int above = index >= width ? threeBits(layer, index - width) : 0;
+        int middle = threeBits(layer, index);
+        int below = index + width < cells.length ? threeBits(layer, index + width) : 0;
+        return above | (middle & 1) << 3 | (middle >>> 2) << 4 | below << 5;
+    }
+    
+    /**
+     * Read three consecutive bits from a layer.
+     * @param layer The layer to read.
+     * @param position The position of the first bit.
+     * @return The three bits, lowest first.
+     */
+    private static int threeBits(long[] layer, int position)
+    {
+        int word = position >>> 6;
+        int shift = position & 63;
+        long bits = layer[word] >>> shift;
+        if(shift > 61) {
+            bits |= layer[word + 1] << (64 - shift);
+        }
+        return (int) bits & 7;
+    }
 }
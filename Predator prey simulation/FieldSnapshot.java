@@ -0,0 +1,118 @@
+/**
+ * The state of a field after a step, as a copy of the species code of
+ * each cell together with the step, the hour and the temperature. It
+ * is cheap to make, and is not changed once made, so it can be drawn
+ * or counted on another thread while the simulation moves on.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class FieldSnapshot
+{
+    // The number of the step.
+    private final int step;
+    // The hour of the day.
+    private final int hour;
+    // The temperature.
+    private final int temperature;
+    // The depth and width of the field.
+    private final int depth, width;
+    // The species code of each cell, at row * width + col.
+    private final byte[] codes;
+    // The number of members of each species, indexed by species code.
+    private final int[] population;
+
+    /**
+     * Take a snapshot of a field.
+     * @param step The number of the step.
+     * @param hour The hour of the day.
+     * @param field The field.
+     * @param buffer An array to copy the codes into, or null. It must
+     *               not be used by anything else afterwards.
+     */
+    public FieldSnapshot(int step, int hour, Field field, byte[] buffer)
+    {
+        this.step = step;
+        this.hour = hour;
+        Weather weather = field.getWeather();
+        temperature = weather == null ? 0 : weather.getTemperature();
+        depth = field.getDepth();
+        width = field.getWidth();
+        codes = field.copySpeciesCodes(buffer);
+        population = new int[Species.MAX_SPECIES];
+        for(int code = 1; code < Species.count(); code++) {
+            population[code] = field.getPopulation(code);
+        }
+    }
+
+    /**
+     * @return The number of the step.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The hour of the day.
+     */
+    public int getHour()
+    {
+        return hour;
+    }
+
+    /**
+     * @return The temperature.
+     */
+    public int getTemperature()
+    {
+        return temperature;
+    }
+
+    /**
+     * @return The depth of the field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Return the species code of the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The code of the cell's occupant, or Species.EMPTY.
+     */
+    public int getSpeciesCode(int row, int col)
+    {
+        return codes[row * width + col];
+    }
+
+    /**
+     * Return the number of members of a species.
+     * @param code The species code.
+     * @return The number of cells holding the species.
+     */
+    public int getPopulation(int code)
+    {
+        return population[code];
+    }
+
+    /**
+     * Give up the array of codes, for a later snapshot to copy into.
+     * The snapshot must not be used afterwards.
+     * @return The array.
+     */
+    byte[] release()
+    {
+        return codes;
+    }
+}
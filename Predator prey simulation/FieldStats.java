@@ -1,5 +1,5 @@
 import java.awt.Color;
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  * This class collects and provides some statistical data on the state 
@@ -11,8 +11,11 @@ import java.util.HashMap;
  */
 public class FieldStats
 {
-    // Counters for each type of entity (fox, rabbit, etc.) in the simulation.
-    private HashMap<Class, Counter> counters;
+    // The count for each species, indexed by species code.
+    private int[] counts;
+    // The set of species that have been counted, which are shown even
+    // once there are none left.
+    private int counted;
     // Whether the counters are currently up to date.
     private boolean countsValid;
 
@@ -21,9 +24,8 @@ public class FieldStats
      */
     public FieldStats()
     {
-        // Set up a collection for counters for each type of animal that
-        // we might find
-        counters = new HashMap<>();
+        counts = new int[Species.MAX_SPECIES];
+        counted = 0;
         countsValid = true;
     }
 
@@ -37,12 +39,13 @@ public class FieldStats
         if(!countsValid) {
             generateCounts(field);
         }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            buffer.append(info.getName());
-            buffer.append(": ");
-            buffer.append(info.getCount());
-            buffer.append(' ');
+        for(int code = 1; code < Species.count(); code++) {
+            if((counted & Species.bit(code)) != 0) {
+                buffer.append(Species.classOf(code).getName());
+                buffer.append(": ");
+                buffer.append(counts[code]);
+                buffer.append(' ');
+            }
         }
         return buffer.toString();
     }
@@ -54,10 +57,7 @@ public class FieldStats
     public void reset()
     {
         countsValid = false;
-        for(Class key : counters.keySet()) {
-            Counter count = counters.get(key);
-            count.reset();
-        }
+        Arrays.fill(counts, 0);
     }
 
     /**
@@ -66,14 +66,20 @@ public class FieldStats
      */
     public void incrementCount(Class animalClass)
     {
-        Counter count = counters.get(animalClass);
-        if(count == null) {
-            // We do not have a counter for this species yet.
-            // Create one.
-            count = new Counter(animalClass.getName());
-            counters.put(animalClass, count);
-        }
-        count.increment();
+        incrementCount(animalClass, 1);
+    }
+
+    /**
+     * Increment the count for one class of animal by a number of
+     * animals counted elsewhere.
+     * @param animalClass The class of animal to increment.
+     * @param amount The number of animals.
+     */
+    public void incrementCount(Class<?> animalClass, int amount)
+    {
+        int code = Species.codeOf(animalClass);
+        counts[code] += amount;
+        counted |= Species.bit(code);
     }
 
     /**
@@ -96,9 +102,8 @@ public class FieldStats
         if(!countsValid) {
             generateCounts(field);
         }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            if(info.getCount() > 0) {
+        for(int code = 1; code < Species.count(); code++) {
+            if(counts[code] > 0) {
                 nonZero++;
             }
         }
@@ -106,21 +111,19 @@ public class FieldStats
     }
 
     /**
-     * Generate counts of the number of foxes and rabbits.
-     * These are not kept up to date as foxes and rabbits
-     * are placed in the field, but only when a request
-     * is made for the information.
+     * Generate counts of the number of each species. The field keeps
+     * its population up to date as animals are placed and removed, so
+     * this does not look at the cells.
      * @param field The field to generate the stats for.
      */
     private void generateCounts(Field field)
     {
         reset();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    incrementCount(animal.getClass());
-                }
+        for(int code = 1; code < Species.count(); code++) {
+            int population = field.getPopulation(code);
+            if(population > 0) {
+                counts[code] = population;
+                counted |= Species.bit(code);
             }
         }
         countsValid = true;
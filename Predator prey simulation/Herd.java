@@ -0,0 +1,356 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The animals of one species, kept as parallel arrays of primitives
+ * rather than as objects. The cell, age, food level and flags of the
+ * i-th animal are the i-th elements of four arrays, so an animal takes
+ * nine bytes rather than the forty or so of an Animal object, and a
+ * loop over the animals reads each array in order.
+ *
+ * A herd also holds the rules of its species. It is made by the
+ * species' class (see Shark.herd and the others), so packed animals
+ * follow the same rules as animal objects. HerdEngine moves them.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class Herd
+{
+    // The flag of a male animal.
+    public static final int MALE = 1;
+    // The flag of an infected animal.
+    public static final int INFECTED = 2;
+    // The flag of an animal whose infection will kill it.
+    public static final int INFECTION_KILLS = 4;
+    // The flag of an animal that has died but not yet been removed.
+    public static final int DEAD = 8;
+
+    // The species code of the animals.
+    private int code;
+    // The species code of their young.
+    private int youngCode;
+    // The age at which an animal can start to breed.
+    private int breedingAge;
+    // The age to which an animal can live.
+    private int maxAge;
+    // The likelihood of an animal breeding.
+    private double breedingProbability;
+    // The maximum number of births.
+    private int maxLitterSize;
+    // The species set of what an animal will eat, including plastic.
+    private int food;
+    // The food value of each species eaten, indexed by species code,
+    // or null if eating does not change the food level.
+    private int[] foodValues;
+    // The food level of a newborn, and the bound of a random one.
+    private int fullFood;
+    // Whether the animals get hungrier each step.
+    private boolean hungry;
+    // The food value of an animal to whatever eats it.
+    private int preyValue;
+
+    // The cell of each animal.
+    private int[] cells;
+    // The age of each animal.
+    private short[] ages;
+    // The food level of each animal.
+    private short[] foodLevels;
+    // The flags of each animal.
+    private byte[] flags;
+    // The number of animals, including dead ones not yet removed.
+    private int size;
+
+    /**
+     * Create an empty herd.
+     * @param code The species code of the animals.
+     * @param youngCode The species code of their young.
+     * @param breedingAge The age at which an animal can start to breed.
+     * @param maxAge The age to which an animal can live.
+     * @param breedingProbability The likelihood of an animal breeding.
+     * @param maxLitterSize The maximum number of births.
+     * @param food The species set of what an animal will eat.
+     * @param foodValues The food value of each species eaten, or null.
+     * @param fullFood The food level of a newborn.
+     * @param hungry Whether the animals get hungrier each step.
+     * @param preyValue The food value of an animal to whatever eats it.
+     */
+    public Herd(int code, int youngCode, int breedingAge, int maxAge,
+                double breedingProbability, int maxLitterSize, int food,
+                int[] foodValues, int fullFood, boolean hungry, int preyValue)
+    {
+        this.code = code;
+        this.youngCode = youngCode;
+        this.breedingAge = breedingAge;
+        this.maxAge = maxAge;
+        this.breedingProbability = breedingProbability;
+        this.maxLitterSize = maxLitterSize;
+        this.food = food;
+        this.foodValues = foodValues;
+        this.fullFood = fullFood;
+        this.hungry = hungry;
+        this.preyValue = preyValue;
+        cells = new int[256];
+        ages = new short[256];
+        foodLevels = new short[256];
+        flags = new byte[256];
+        size = 0;
+    }
+
+    /**
+     * Add an animal, drawing its sex, infection and, if asked, its age
+     * and food level in the same way as an animal object.
+     * @param cell The packed index of the animal's cell.
+     * @param randomAge If true, the animal has a random age and food level.
+     * @return The animal's slot in the herd.
+     */
+    public int add(int cell, boolean randomAge)
+    {
+        if(size == cells.length) {
+            int length = size * 2;
+            cells = Arrays.copyOf(cells, length);
+            ages = Arrays.copyOf(ages, length);
+            foodLevels = Arrays.copyOf(foodLevels, length);
+            flags = Arrays.copyOf(flags, length);
+        }
+        Random rand = Randomizer.getRandom();
+        int flag = 0;
+        if(rand.nextInt(2) == 0) {
+            flag |= MALE;
+        }
+        if(rand.nextInt(5) < 2) {
+            flag |= INFECTED;
+        }
+        if(rand.nextInt(4) == 0) {
+            flag |= INFECTION_KILLS;
+        }
+        int slot = size++;
+        cells[slot] = cell;
+        flags[slot] = (byte) flag;
+        if(randomAge) {
+            ages[slot] = (short) rand.nextInt(maxAge);
+            foodLevels[slot] = (short) rand.nextInt(fullFood);
+        }
+        else {
+            ages[slot] = 0;
+            foodLevels[slot] = (short) fullFood;
+        }
+        return slot;
+    }
+
+    /**
+     * Age every live animal by one step, make the hungry ones hungrier
+     * and let infections kill or be cured, as at the start of an
+     * animal's act. The animals that die are removed from the field.
+     * @param count The number of animals to age, leaving out any born
+     *              during this step.
+     * @param field The field the animals live in.
+     * @param slots The slot of the animal in each cell.
+     */
+    public void age(int count, Field field, int[] slots)
+    {
+        Random rand = Randomizer.getRandom();
+        for(int i = 0; i < count; i++) {
+            int flag = flags[i];
+            if((flag & DEAD) != 0) {
+                continue;
+            }
+            boolean dies = ++ages[i] > maxAge;
+            if(hungry && --foodLevels[i] <= 0) {
+                dies = true;
+            }
+            if((flag & INFECTED) != 0) {
+                if((flag & INFECTION_KILLS) != 0) {
+                    dies = true;
+                }
+                else if(rand.nextInt(11) != 1) {
+                    flags[i] = (byte) (flag | INFECTION_KILLS);
+                }
+            }
+            if(dies) {
+                kill(i, field, slots);
+            }
+        }
+    }
+
+    /**
+     * Work out how many young an animal has this step, as breed does
+     * for an animal object.
+     * @param slot The animal's slot.
+     * @param field The field the animals live in.
+     * @return The number of births (may be zero).
+     */
+    public int breed(int slot, Field field)
+    {
+        if(ages[slot] < breedingAge) {
+            return 0;
+        }
+        Random rand = Randomizer.getRandom();
+        if(rand.nextDouble() > breedingProbability) {
+            return 0;
+        }
+        int cell = cells[slot];
+        int partners = field.speciesMask(cell, Species.bit(code));
+        int males = field.maleMask(cell);
+        if((partners & (isMale(slot) ? ~males : males)) == 0) {
+            return 0;
+        }
+        return rand.nextInt(maxLitterSize) + 1;
+    }
+
+    /**
+     * Mark an animal dead and remove it from the field.
+     * @param slot The animal's slot.
+     * @param field The field the animals live in.
+     * @param slots The slot of the animal in each cell.
+     */
+    public void kill(int slot, Field field, int[] slots)
+    {
+        flags[slot] |= DEAD;
+        Census.record(Census.DEATHS, code);
+        int cell = cells[slot];
+        field.clear(cell);
+        slots[cell] = -1;
+    }
+
+    /**
+     * Remove the dead animals, keeping the others in order.
+     * @param slots The slot of the animal in each cell, which is
+     *              updated for the animals that move down.
+     */
+    public void compact(int[] slots)
+    {
+        int kept = 0;
+        for(int i = 0; i < size; i++) {
+            if((flags[i] & DEAD) == 0) {
+                if(kept != i) {
+                    cells[kept] = cells[i];
+                    ages[kept] = ages[i];
+                    foodLevels[kept] = foodLevels[i];
+                    flags[kept] = flags[i];
+                    slots[cells[kept]] = kept;
+                }
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    /**
+     * Remove every animal.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * @return The species code of the animals.
+     */
+    public int getCode()
+    {
+        return code;
+    }
+
+    /**
+     * @return The species code of the animals' young.
+     */
+    public int getYoungCode()
+    {
+        return youngCode;
+    }
+
+    /**
+     * @return The species set of what the animals eat.
+     */
+    public int getFood()
+    {
+        return food;
+    }
+
+    /**
+     * Return the food level an animal has after eating a species.
+     * @param eaten The species code of what was eaten.
+     * @return The new food level, or -1 if eating does not change it.
+     */
+    public int getFoodValue(int eaten)
+    {
+        return foodValues == null ? -1 : foodValues[eaten];
+    }
+
+    /**
+     * @return The food value of an animal to whatever eats it.
+     */
+    public int getPreyValue()
+    {
+        return preyValue;
+    }
+
+    /**
+     * @return The number of animals, including dead ones not yet removed.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the number of live animals.
+     * @return The number of animals not marked dead.
+     */
+    public int getAliveCount()
+    {
+        int alive = 0;
+        for(int i = 0; i < size; i++) {
+            if((flags[i] & DEAD) == 0) {
+                alive++;
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * @param slot An animal's slot.
+     * @return The packed index of the animal's cell.
+     */
+    public int getCell(int slot)
+    {
+        return cells[slot];
+    }
+
+    /**
+     * @param slot An animal's slot.
+     * @param cell The packed index of the animal's new cell.
+     */
+    public void setCell(int slot, int cell)
+    {
+        cells[slot] = cell;
+    }
+
+    /**
+     * @param slot An animal's slot.
+     * @param foodLevel The animal's new food level.
+     */
+    public void setFoodLevel(int slot, int foodLevel)
+    {
+        foodLevels[slot] = (short) foodLevel;
+    }
+
+    /**
+     * @param slot An animal's slot.
+     * @return true if the animal has not died.
+     */
+    public boolean isAlive(int slot)
+    {
+        return (flags[slot] & DEAD) == 0;
+    }
+
+    /**
+     * @param slot An animal's slot.
+     * @return true if the animal is male.
+     */
+    public boolean isMale(int slot)
+    {
+        return (flags[slot] & MALE) != 0;
+    }
+}
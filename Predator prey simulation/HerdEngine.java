@@ -0,0 +1,301 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Step the animals of a field kept in herds (see Herd) instead of as
+ * objects. Each step, the herds take their turns one after another.
+ * In its turn a herd first ages all its animals in one pass over its
+ * arrays. Then each live animal, in order, breeds, hunts and moves by
+ * the same rules as an animal object.
+ *
+ * The field still needs something in the cells of packed animals.
+ * Each herd has two shared markers, one for males and one for females,
+ * and a grid gives the slot in its herd of the animal in each cell.
+ * Other actors, such as plants and humans, can share the field as
+ * objects: packed animals eat them by setting them dead, and a human
+ * eats a packed animal through its marker.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class HerdEngine
+{
+    // The field the animals live in.
+    private Field field;
+    // The herds, indexed by species code, or null.
+    private Herd[] herds;
+    // The herds in the order in which they take their turns.
+    private List<Herd> order;
+    // The markers of each herd: at 2 * code for females and
+    // 2 * code + 1 for males.
+    private Marker[] markers;
+    // The slot of the animal in each cell, or -1.
+    private int[] slots;
+    // The number of animals in each herd at the start of the step.
+    private int[] counts;
+
+    /**
+     * Create an engine with a herd for each animal species.
+     * @param field The field the animals live in.
+     */
+    public HerdEngine(Field field)
+    {
+        this.field = field;
+        herds = new Herd[Species.MAX_SPECIES];
+        order = new ArrayList<>();
+        markers = new Marker[2 * Species.MAX_SPECIES];
+        slots = new int[field.getDepth() * field.getWidth()];
+        Arrays.fill(slots, -1);
+        counts = new int[Species.MAX_SPECIES];
+        addHerd(Shark.herd());
+        addHerd(Shrimp.herd());
+        addHerd(Otter.herd());
+        addHerd(Plankton.herd());
+    }
+
+    /**
+     * Add an animal to the herd of its species, placing it in the field.
+     * @param code The species code of the animal.
+     * @param location Where to place the animal.
+     * @param randomAge If true, the animal has a random age and food level.
+     */
+    public void add(int code, Location location, boolean randomAge)
+    {
+        place(herds[code], field.index(location), randomAge);
+    }
+
+    /**
+     * Let every packed animal take one step.
+     */
+    public void act()
+    {
+        for(Herd herd : order) {
+            counts[herd.getCode()] = herd.size();
+        }
+        for(Herd herd : order) {
+            int count = counts[herd.getCode()];
+            herd.age(count, field, slots);
+            for(int i = 0; i < count; i++) {
+                if(herd.isAlive(i)) {
+                    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+                    giveBirth(herd, i);
+                    hunt(herd, i);
+                    if(Metrics.ENABLED) {
+                        Metrics.recordTurn(herd.getCode(), start);
+                    }
+                }
+            }
+        }
+        for(Herd herd : order) {
+            herd.compact(slots);
+        }
+    }
+
+    /**
+     * Remove every packed animal. The field must be cleared separately.
+     */
+    public void clear()
+    {
+        for(Herd herd : order) {
+            herd.clear();
+        }
+        Arrays.fill(slots, -1);
+    }
+
+    /**
+     * Return the herd of a species.
+     * @param code The species code.
+     * @return The herd, or null if the species is not packed.
+     */
+    public Herd getHerd(int code)
+    {
+        return herds[code];
+    }
+
+    /**
+     * Kill whatever is in a cell: a packed animal through its herd, and
+     * anything else by setting it dead.
+     * @param cell The packed index of the cell.
+     * @return The food value of a packed animal, or 0.
+     */
+    public int kill(int cell)
+    {
+        Object occupant = field.getObjectAt(cell);
+        int code = field.getSpeciesCode(cell);
+        if(code != Species.PLASTIC) {
+            Census.record(Census.PREDATION, code);
+        }
+        if(occupant instanceof Marker) {
+            Herd prey = herds[((Marker) occupant).getCode()];
+            prey.kill(slots[cell], field, slots);
+            return prey.getPreyValue();
+        }
+        ((Actor) occupant).setDead();
+        return 0;
+    }
+
+    /**
+     * Add a herd and make its markers.
+     * @param herd The herd.
+     */
+    private void addHerd(Herd herd)
+    {
+        int code = herd.getCode();
+        herds[code] = herd;
+        order.add(herd);
+        markers[2 * code] = new Marker(this, code, false);
+        markers[2 * code + 1] = new Marker(this, code, true);
+    }
+
+    /**
+     * Add an animal to a herd and place its marker in the field.
+     * @param herd The herd.
+     * @param cell The packed index of the animal's cell.
+     * @param randomAge If true, the animal has a random age and food level.
+     */
+    private void place(Herd herd, int cell, boolean randomAge)
+    {
+        int slot = herd.add(cell, randomAge);
+        slots[cell] = slot;
+        field.place(markerOf(herd, slot), cell);
+    }
+
+    /**
+     * Let an animal give birth into free cells next to it.
+     * @param herd The animal's herd.
+     * @param slot The animal's slot.
+     */
+    private void giveBirth(Herd herd, int slot)
+    {
+        int cell = herd.getCell(slot);
+        // As with animal objects, the chance of breeding is drawn even
+        // when there is no room.
+        int births = herd.breed(slot, field);
+        if(births == 0 || field.freeCount(cell) == 0) {
+            // No offspring, or no room for them.
+            return;
+        }
+        Herd young = herds[herd.getYoungCode()];
+        for(int b = 0; b < births; b++) {
+            int mask = field.freeMask(cell);
+            if(mask == 0) {
+                break;
+            }
+            place(young, field.neighbours(cell, mask).next(), false);
+            Census.record(Census.BIRTHS, young.getCode());
+        }
+    }
+
+    /**
+     * Let an animal eat the first food next to it and move there, or
+     * else move into a free cell. With nowhere to go it dies.
+     * @param herd The animal's herd.
+     * @param slot The animal's slot.
+     */
+    private void hunt(Herd herd, int slot)
+    {
+        int cell = herd.getCell(slot);
+        int target = -1;
+        NeighbourCursor it = field.neighbours(cell, field.speciesMask(cell, herd.getFood()));
+        while(it.hasNext() && target < 0) {
+            int where = it.next();
+            int code = field.getSpeciesCode(where);
+            if(code == Species.PLASTIC) {
+                kill(where);
+                if(herd.isAlive(slot)) {
+                    herd.kill(slot, field, slots);
+                }
+            }
+            else {
+                kill(where);
+                int value = herd.getFoodValue(code);
+                if(value >= 0) {
+                    herd.setFoodLevel(slot, value);
+                }
+                target = where;
+            }
+        }
+        if(!herd.isAlive(slot)) {
+            return;
+        }
+        if(target < 0) {
+            int mask = field.freeMask(cell);
+            if(mask == 0) {
+                // Overcrowding.
+                herd.kill(slot, field, slots);
+                return;
+            }
+            target = field.neighbours(cell, mask).next();
+        }
+        field.clear(cell);
+        slots[cell] = -1;
+        field.place(markerOf(herd, slot), target);
+        slots[target] = slot;
+        herd.setCell(slot, target);
+    }
+
+    /**
+     * Return the marker to place in the cell of an animal.
+     * @param herd The animal's herd.
+     * @param slot The animal's slot.
+     * @return The marker for the animal's species and sex.
+     */
+    private Marker markerOf(Herd herd, int slot)
+    {
+        return markers[2 * herd.getCode() + (herd.isMale(slot) ? 1 : 0)];
+    }
+
+    /**
+     * What the field holds in the cell of a packed animal. All the
+     * animals of a species and sex share one marker.
+     */
+    public static class Marker
+    {
+        // The engine whose herds the animals belong to.
+        private HerdEngine engine;
+        // The species code of the animals.
+        private int code;
+        // Whether the animals are male.
+        private boolean male;
+
+        /**
+         * Create a marker.
+         * @param engine The engine whose herds the animals belong to.
+         * @param code The species code of the animals.
+         * @param male Whether the animals are male.
+         */
+        private Marker(HerdEngine engine, int code, boolean male)
+        {
+            this.engine = engine;
+            this.code = code;
+            this.male = male;
+        }
+
+        /**
+         * @return The species code of the animals.
+         */
+        public int getCode()
+        {
+            return code;
+        }
+
+        /**
+         * @return Whether the animals are male.
+         */
+        public boolean isMale()
+        {
+            return male;
+        }
+
+        /**
+         * Kill the packed animal in a cell holding this marker.
+         * @param cell The packed index of the cell.
+         * @return The food value of the animal to whatever ate it.
+         */
+        public int kill(int cell)
+        {
+            return engine.kill(cell);
+        }
+    }
+}
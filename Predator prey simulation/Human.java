@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -18,11 +17,14 @@ public class Human implements Actor
     // The age to which a human can live.
     private static final int MAX_AGE = 150;
 
-    private static final Random rand = Randomizer.getRandom();
+    // The species set of the animals a human will eat.
+    private static final int FOOD = Species.ANIMALS;
 
     private int age;
     private int foodLevel;
     private boolean alive;
+    // The food level of the animal a synchronous step plans to eat.
+    private int meal;
 
     /**
      * Create a new human. A human may be created with age
@@ -38,6 +40,7 @@ public class Human implements Actor
         this.field = field;
         setLocation(location);
         if(randomAge){
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(35);
         }
@@ -56,17 +59,17 @@ public class Human implements Actor
     {
         incrementAge();
         incrementHunger();
-        if(isAlive() && !Time.isNight()) { 
-            if(!Weather.getCondition().equals("raining")) {
+        if(isAlive() && !isNight()) { 
+            if(!isRaining()) {
                 // Move towards a source of food if found.
                 Location newLocation = findFood();
                 if(newLocation == null && getField() != null) { 
                     // No food found - try to move to a free location.
-                    newLocation = getField().freeAdjacentLocation(getLocation());
+                    newLocation = getField().claimFreeAdjacentLocation(this, getLocation());
                 }
                 // See if it was possible to move.
                 if(newLocation != null) {
-                    setLocation(newLocation);
+                    moveTo(newLocation);
                 }
                 else {
                     // Overcrowding.
@@ -77,6 +80,98 @@ public class Human implements Actor
         }
     }
 
+    /**
+     * Plan this human's synchronous step. It ages and gets hungrier,
+     * and by day, unless it is raining, plans to eat the first animal
+     * next to it or else to move into a free cell.
+     * @param intent Receives the plan.
+     */
+    public void plan(Intent intent)
+    {
+        incrementAge();
+        incrementHunger();
+        if(isAlive() && !isNight() && !isRaining()) {
+            Field field = getField();
+            Location here = getLocation();
+            NeighbourCursor it = field.neighbours(here, field.speciesMask(here, FOOD));
+            while(it.hasNext()) {
+                int target = it.next();
+                Object occupant = field.getObjectAt(target);
+                if(occupant instanceof Animal) {
+                    meal = ((Animal) occupant).getFoodLevel();
+                    intent.setTarget(target, field.getSpeciesCode(target));
+                    return;
+                }
+                // A packed animal cannot be planned for.
+            }
+            it = field.neighbours(here, field.freeMask(here));
+            if(it.hasNext()) {
+                intent.setTarget(it.next(), Species.EMPTY);
+            }
+            else {
+                intent.setOvercrowded();
+            }
+        }
+    }
+
+    /**
+     * Carry out the plan made for a synchronous step.
+     * @param intent The plan.
+     * @param newHumans A list to receive newly born humans.
+     */
+    public void commit(Intent intent, List<Actor> newHumans)
+    {
+        if(location == null) {
+            return;
+        }
+        if(intent.isOvercrowded()) {
+            setDead();
+        }
+        else if(intent.isTargetWon()) {
+            if(intent.getFood() != Species.EMPTY) {
+                foodLevel = meal;
+            }
+            setLocation(field.getLocation(intent.getTarget()));
+        }
+    }
+
+    /**
+     * Let the human sleep while it is night or raining, when it only
+     * ages and gets hungrier, until the step in which it would die of
+     * either.
+     * @param most The most steps it may sleep.
+     * @return The number of steps it sleeps.
+     */
+    public int sleep(int most)
+    {
+        if(!isNight() && !isRaining()) {
+            return 0;
+        }
+        int steps = Math.min(most, Math.min(MAX_AGE - age, foodLevel - 1));
+        return Math.max(steps, 0);
+    }
+
+    /**
+     * A sleeping human is woken when the night ends or, by day, when
+     * the rain stops.
+     * @return The change it waits for.
+     */
+    public int getAwaitedChange()
+    {
+        return isNight() ? Change.DAYBREAK : Change.RAIN_STOPS;
+    }
+
+    /**
+     * Age the human, and make it hungrier, by the steps it slept
+     * through.
+     * @param steps The number of steps.
+     */
+    public void wake(int steps)
+    {
+        age += steps;
+        foodLevel -= steps;
+    }
+
     /**
      * Check whether the human is alive or not.
      * @return true if the human is still alive.
@@ -95,22 +190,37 @@ public class Human implements Actor
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
+        Location here = getLocation();
+        NeighbourCursor it = field.neighbours(here, field.speciesMask(here, FOOD));
         while(it.hasNext()) {
-            Location where = it.next();
-            Object object = field.getObjectAt(where);
-            if(object instanceof Animal) {
-                Animal animal = (Animal) object;
-                if(animal.isAlive()) { 
-                    animal.setDead();
-                    foodLevel = animal.getFoodLevel();
+            // Every species in the mask is an animal.
+            Location where = it.nextLocation();
+            Object occupant = field.getObjectAt(where);
+            if(occupant instanceof HerdEngine.Marker) {
+                // A packed animal, which is eaten through its herd.
+                if(alive) {
+                    foodLevel = ((HerdEngine.Marker) occupant).kill(field.index(where));
+                    field.claim(this, where);
                     return where;
                 }
-                else if(animal.isInfected()) {
+                continue;
+            }
+            if(!(occupant instanceof Animal)) {
+                // Changed by another thread since the mask was read.
+                continue;
+            }
+            Animal animal = (Animal) occupant;
+            if(alive && animal.isAlive() && field.replace(animal, this, where)) {
+                if(!field.isConcurrent()) {
                     animal.setDead();
-                    setDead();
                 }
+                Census.record(Census.PREDATION, Species.codeOf(animal));
+                foodLevel = animal.getFoodLevel();
+                return where;
+            }
+            else if(animal.isInfected()) {
+                animal.setDead();
+                setDead();
             }
         }
         return null;
@@ -155,6 +265,9 @@ public class Human implements Actor
      */
     public void setLocation(Location newLocation)
     {
+        if(Metrics.ENABLED) {
+            Metrics.count(Metrics.SET_LOCATION);
+        }
         if(location != null) {
             field.clear(location);
         }
@@ -162,6 +275,32 @@ public class Human implements Actor
         field.place(this, newLocation);
     }
 
+    /**
+     * Leave the current cell for one this human has already claimed.
+     * @param newLocation The claimed cell.
+     */
+    private void moveTo(Location newLocation)
+    {
+        field.release(this, location);
+        location = newLocation;
+    }
+
+    /**
+     * @return true if it is night in the human's simulation.
+     */
+    private boolean isNight()
+    {
+        return field.getTime().isNight();
+    }
+
+    /**
+     * @return true if it is raining in the human's simulation.
+     */
+    private boolean isRaining()
+    {
+        return field.getWeather().getCondition().equals("raining");
+    }
+
     /**
      * Return the human's field.
      * @return Field the human's field.
@@ -177,9 +316,12 @@ public class Human implements Actor
      */
     public void setDead()
     {
+        if(alive) {
+            Census.record(Census.DEATHS, Species.codeOf(this));
+        }
         alive = false;
         if(location != null) {
-            field.clear(location);
+            field.release(this, location);
             location = null;
             field = null;
         }
@@ -0,0 +1,202 @@
+/**
+ * What an actor plans to do during a synchronous step (see
+ * SynchronousEngine). An actor may want to move into one neighbouring
+ * cell, eating whatever is there, and to give birth into some others.
+ * Each of these cells is claimed, and when several actors claim the
+ * same cell only one of them gets it.
+ *
+ * Intents are reused from one step to the next.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class Intent
+{
+    // The cell of the actor at the start of the step.
+    private int cell;
+    // The cell the actor wants to move into, or -1 to stay.
+    private int target;
+    // The species code of what is in the target cell.
+    private int food;
+    // Whether the actor will die for want of room to move.
+    private boolean overcrowded;
+    // The cells the actor wants to give birth into.
+    private int[] births;
+    // The number of births planned.
+    private int birthCount;
+    // Which claims were won: one bit per birth, and TARGET_WON.
+    private int won;
+    // The actor's claim key, lowest wins.
+    private long key;
+    // The actor's random number generator for the step.
+    private RandomStream random;
+
+    // The bit of won that is set when the target cell was won.
+    private static final int TARGET_WON = 1 << Field.DIRECTIONS;
+
+    /**
+     * Create an empty intent.
+     */
+    public Intent()
+    {
+        births = new int[Field.DIRECTIONS];
+        random = new RandomStream(0);
+        reset(-1, 0);
+    }
+
+    /**
+     * Forget the previous plan and start a new one.
+     * @param cell The cell of the actor at the start of the step.
+     * @param key The actor's claim key. Lower keys win.
+     */
+    public void reset(int cell, long key)
+    {
+        this.cell = cell;
+        this.key = key;
+        target = -1;
+        food = Species.EMPTY;
+        overcrowded = false;
+        birthCount = 0;
+        won = 0;
+    }
+
+    /**
+     * Plan to move into a cell.
+     * @param target The cell.
+     * @param food The species code of what is there, to be eaten,
+     *             or Species.EMPTY.
+     */
+    public void setTarget(int target, int food)
+    {
+        this.target = target;
+        this.food = food;
+    }
+
+    /**
+     * Plan to give birth into a cell.
+     * @param birth The cell, which must be empty.
+     */
+    public void addBirth(int birth)
+    {
+        births[birthCount++] = birth;
+    }
+
+    /**
+     * Plan to die for want of room to move.
+     */
+    public void setOvercrowded()
+    {
+        overcrowded = true;
+    }
+
+    /**
+     * Record that a claim was won.
+     * @param birth The number of the birth, or -1 for the target.
+     */
+    public void setWon(int birth)
+    {
+        won |= birth < 0 ? TARGET_WON : 1 << birth;
+    }
+
+    /**
+     * @return The cell of the actor at the start of the step.
+     */
+    public int getCell()
+    {
+        return cell;
+    }
+
+    /**
+     * @return The cell the actor wants to move into, or -1.
+     */
+    public int getTarget()
+    {
+        return target;
+    }
+
+    /**
+     * @return The species code of what is in the target cell.
+     */
+    public int getFood()
+    {
+        return food;
+    }
+
+    /**
+     * @return Whether the actor will die for want of room to move.
+     */
+    public boolean isOvercrowded()
+    {
+        return overcrowded;
+    }
+
+    /**
+     * @return The number of births planned.
+     */
+    public int getBirthCount()
+    {
+        return birthCount;
+    }
+
+    /**
+     * Return the cell of a planned birth.
+     * @param birth The number of the birth.
+     * @return The cell.
+     */
+    public int getBirth(int birth)
+    {
+        return births[birth];
+    }
+
+    /**
+     * Return whether a birth's cell was won.
+     * @param birth The number of the birth.
+     * @return true if the birth can go ahead.
+     */
+    public boolean isBirthWon(int birth)
+    {
+        return (won & (1 << birth)) != 0;
+    }
+
+    /**
+     * @return true if the actor won its target cell.
+     */
+    public boolean isTargetWon()
+    {
+        return (won & TARGET_WON) != 0;
+    }
+
+    /**
+     * Return whether a cell is already part of this plan.
+     * @param other The cell.
+     * @return true if the cell is the target or one of the births.
+     */
+    public boolean uses(int other)
+    {
+        if(other == target) {
+            return true;
+        }
+        for(int b = 0; b < birthCount; b++) {
+            if(births[b] == other) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The actor's claim key. Lower keys win.
+     */
+    public long getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @return The actor's random number generator for the step.
+     */
+    public RandomStream getRandom()
+    {
+        return random;
+    }
+}
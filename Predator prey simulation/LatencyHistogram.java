@@ -0,0 +1,148 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds, in the manner of an HDR
+ * histogram: the buckets are spaced by powers of two, each split into
+ * SUB_BUCKETS equal parts, so every recorded value is kept to within
+ * one part in SUB_BUCKETS whatever its size. Any number of threads may
+ * record at once: a value takes a few atomic updates, and no lock.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class LatencyHistogram
+{
+    // The number of bits of a value kept below its leading bit.
+    private static final int SUB_BITS = 3;
+    // The number of buckets each power of two is split into.
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // The number of buckets, enough for any non-negative long.
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+    // Positions in the totals.
+    private static final int TOTAL = 0, SUM = 1, MAX = 2;
+
+    // The number of values in each bucket.
+    private AtomicLongArray counts;
+    // The number of values, their sum and the largest one, at
+    // TOTAL, SUM and MAX.
+    private AtomicLongArray totals;
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram()
+    {
+        counts = new AtomicLongArray(BUCKETS);
+        totals = new AtomicLongArray(3);
+    }
+
+    /**
+     * Record a duration.
+     * @param nanos The duration in nanoseconds. A negative one counts
+     *              as 0.
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        totals.incrementAndGet(TOTAL);
+        totals.addAndGet(SUM, value);
+        long max = totals.get(MAX);
+        while(value > max && !totals.compareAndSet(MAX, max, value)) {
+            max = totals.get(MAX);
+        }
+    }
+
+    /**
+     * @return The number of durations recorded.
+     */
+    public long getCount()
+    {
+        return totals.get(TOTAL);
+    }
+
+    /**
+     * @return The mean duration, or 0 if there are none.
+     */
+    public long getMean()
+    {
+        long count = totals.get(TOTAL);
+        return count == 0 ? 0 : totals.get(SUM) / count;
+    }
+
+    /**
+     * @return The longest duration, or 0 if there are none.
+     */
+    public long getMax()
+    {
+        return totals.get(MAX);
+    }
+
+    /**
+     * Return the duration that a given fraction of the recorded ones do
+     * not exceed, to within the precision of the buckets.
+     * @param fraction The fraction, from 0 to 1, such as 0.99.
+     * @return The duration, or 0 if there are none.
+     */
+    public long getPercentile(double fraction)
+    {
+        long count = totals.get(TOTAL);
+        if(count == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for(int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if(seen >= wanted) {
+                return Math.min(highestIn(bucket), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Forget every recorded duration. Durations recorded at the same
+     * time may be partly forgotten.
+     */
+    public void reset()
+    {
+        for(int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        for(int i = 0; i < totals.length(); i++) {
+            totals.set(i, 0);
+        }
+    }
+
+    /**
+     * Return the bucket of a value.
+     * @param value A non-negative value.
+     * @return The index of its bucket.
+     */
+    private static int bucketOf(long value)
+    {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int top = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (top - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (top - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Return the largest value that falls in a bucket.
+     * @param bucket The index of the bucket.
+     * @return The value.
+     */
+    private static long highestIn(int bucket)
+    {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int top = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lowest = (1L << top) | (sub << (top - SUB_BITS));
+        return lowest + (1L << (top - SUB_BITS)) - 1;
+    }
+}
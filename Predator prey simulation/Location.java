@@ -1,6 +1,10 @@
 /**
  * Represent a location in a rectangular grid.
  * 
+ * A Field keeps one shared Location for each of its cells and only
+ * hands out those, so locations obtained from the same field can also
+ * be compared by identity.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
@@ -0,0 +1,192 @@
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A stress check of lock-free mode (see ParallelStepper.setLockFree).
+ * A crowded field is stepped with all its strips acting at once on many
+ * threads, and after every step the field is checked: no two live
+ * actors are in one cell, every live actor's cell holds it, every
+ * occupied cell holds a live actor that is there, no cell is left held
+ * or kept for a newborn (see Field.isPending), and the species codes and
+ * free masks agree with the cells. The actors never sleep, so that every
+ * one of them is looked at after every step.
+ *
+ * Run from the command line, all arguments optional:
+ *   java LockFreeCheck [-size N] [-threads N] [-steps N]
+ * It prints the first problems it finds, and exits with status 1 if
+ * there were any.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class LockFreeCheck
+{
+    // The number of problems printed before the rest are only counted.
+    private static final int MAX_REPORTED = 10;
+
+    // The field being checked.
+    private Field field;
+    // Every actor in the field.
+    private ActorList actors;
+    // The number of problems found so far.
+    private int problems;
+
+    /**
+     * Run the check.
+     * @param args The arguments, as described above.
+     */
+    public static void main(String[] args)
+    {
+        int size = 200;
+        int threads = 8;
+        int steps = 500;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-steps":
+                    steps = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        LockFreeCheck check = new LockFreeCheck(size);
+        int problems = check.run(threads, steps);
+        System.out.println("size=" + size + " threads=" + threads + " steps=" + steps
+                           + " actors=" + check.actors.size() + " problems=" + problems);
+        if(problems > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Create a check on a square field populated as a simulation would
+     * populate it.
+     * @param size The depth and width of the field.
+     */
+    public LockFreeCheck(int size)
+    {
+        field = new Field(size, size);
+        // The simulation only fills the field; the actors are taken
+        // from it and stepped here.
+        new Simulator(field, true);
+        actors = new ActorList(null);
+        for(int index = 0; index < size * size; index++) {
+            Object occupant = field.getObjectAt(index);
+            if(occupant instanceof Actor) {
+                actors.add((Actor) occupant);
+            }
+        }
+    }
+
+    /**
+     * Step the field in lock-free mode, checking it after every step.
+     * @param threads The number of threads.
+     * @param steps The number of steps.
+     * @return The number of problems found.
+     */
+    public int run(int threads, int steps)
+    {
+        ParallelStepper stepper = new ParallelStepper(field, threads);
+        stepper.setLockFree(true);
+        Change changes = new Change();
+        Time time = new Time(changes);
+        Weather weather = new Weather(changes);
+        field.setConditions(time, weather);
+        try {
+            for(int step = 1; step <= steps; step++) {
+                time.incrementHour(step);
+                weather.setWeather(time.getHours());
+                stepper.act(actors, step);
+                check(step);
+            }
+        }
+        finally {
+            stepper.shutdown();
+        }
+        return problems;
+    }
+
+    /**
+     * Check the field and the actors after a step.
+     * @param step The number of the step.
+     */
+    private void check(int step)
+    {
+        Set<Location> taken = new HashSet<>();
+        int live = 0;
+        for(int i = 0; i < actors.size(); i++) {
+            Actor actor = actors.get(i);
+            if(actor.isAlive()) {
+                live++;
+                Location location = actor.getLocation();
+                if(!taken.add(location)) {
+                    report(step, "two actors are in " + location);
+                }
+                else if(field.getObjectAt(location) != actor) {
+                    report(step, "the cell of a live actor at " + location + " does not hold it");
+                }
+            }
+        }
+        int occupied = 0;
+        for(int index = 0; index < field.getDepth() * field.getWidth(); index++) {
+            Location location = field.getLocation(index);
+            Object occupant = field.getObjectAt(index);
+            if(field.isPending(index)) {
+                report(step, "the cell at " + location + " is left pending");
+            }
+            else if(occupant != null) {
+                occupied++;
+                Actor actor = (Actor) occupant;
+                if(!actor.isAlive() || !location.equals(actor.getLocation())) {
+                    report(step, "the cell at " + location + " holds an actor that is not there");
+                }
+            }
+            if(field.getSpeciesCode(index) != Species.codeOf(occupant)) {
+                report(step, "the species code at " + location + " is wrong");
+            }
+            if(field.freeMask(location) != freeMask(location)) {
+                report(step, "the free mask at " + location + " is wrong");
+            }
+        }
+        if(occupied != live) {
+            report(step, occupied + " cells are occupied by " + live + " live actors");
+        }
+    }
+
+    /**
+     * Work out the free mask of a location from the cells themselves.
+     * @param location The location.
+     * @return A mask with one bit set for each empty neighbour.
+     */
+    private int freeMask(Location location)
+    {
+        int free = 0;
+        int adjacent = field.adjacentMask(location);
+        for(int d = 0; d < Field.DIRECTIONS; d++) {
+            if((adjacent & (1 << d)) != 0
+               && field.getObjectAt(field.adjacentLocation(location, d)) == null) {
+                free |= 1 << d;
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Count a problem, and print it if it is one of the first.
+     * @param step The number of the step.
+     * @param problem What is wrong.
+     */
+    private void report(int step, String problem)
+    {
+        problems++;
+        if(problems <= MAX_REPORTED) {
+            System.out.println("step " + step + ": " + problem);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A benchmark of whole headless simulations, to track the throughput
+ * of the simulator from one change to the next. Each scenario runs a
+ * grid size and a mix of species from a fixed seed, once to warm up
+ * and then several times timed, and reports, for the fastest of the
+ * timed runs, the steps per second, the bytes
+ * allocated per second, the time spent collecting garbage and the
+ * peak heap. The results are written as JSON, and can be compared
+ * with the results of an earlier run: the benchmark fails, with exit
+ * status 1, if any scenario's throughput has dropped by more than the
+ * threshold.
+ *
+ * Run from the command line, all arguments optional:
+ *   java MacroBenchmark [-sizes 120x80,1000x1000]
+ *                       [-mixes default,animals,plants] [-threads N]
+ *                       [-out FILE] [-baseline FILE] [-threshold 0.1]
+ * Larger grids, such as 5000x5000, need a heap of several gigabytes
+ * (-Xmx), and are left out unless asked for.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class MacroBenchmark
+{
+    // The seed of every run.
+    private static final long SEED = 1111;
+    // The number of cell updates a timed run aims for, which sets the
+    // number of steps for each grid size.
+    private static final long CELL_STEPS = 100_000_000L;
+    // The fewest and most steps of a timed run.
+    private static final int MIN_STEPS = 5, MAX_STEPS = 2000;
+    // The number of timed runs of each scenario. The fastest is kept,
+    // as the one least disturbed by the rest of the machine.
+    private static final int REPETITIONS = 3;
+    // The least time a timed run steps for. A run of a small grid that
+    // ends sooner is run again from the seed, so it is long enough to
+    // time.
+    private static final long MIN_RUN_NANOS = 1_000_000_000L;
+    // Finds a scenario's name, steps and throughput in a line of the JSON.
+    private static final Pattern RESULT = Pattern.compile(
+        "\"name\": \"([^\"]+)\", \"steps\": (\\d+), \"stepsPerSecond\": ([0-9.eE+-]+)");
+
+    /**
+     * Run the benchmark.
+     * @param args The arguments, as described above.
+     * @throws IOException If the results or baseline could not be
+     *                     written or read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String sizes = "120x80,1000x1000";
+        String mixes = "default,animals,plants";
+        int threads = 1;
+        String out = "benchmark.json";
+        String baseline = null;
+        double threshold = 0.1;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-sizes":
+                    sizes = args[++i];
+                    break;
+                case "-mixes":
+                    mixes = args[++i];
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-out":
+                    out = args[++i];
+                    break;
+                case "-baseline":
+                    baseline = args[++i];
+                    break;
+                case "-threshold":
+                    threshold = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        for(String size : sizes.split(",")) {
+            String[] dimensions = size.split("x");
+            int depth = Integer.parseInt(dimensions[1]);
+            int width = Integer.parseInt(dimensions[0]);
+            for(String mix : mixes.split(",")) {
+                Result result = run(width, depth, mix, threads);
+                System.out.println(result.toJson());
+                results.add(result);
+            }
+        }
+        write(out, results, threads);
+
+        if(baseline != null) {
+            int regressions = compare(readBaseline(baseline), results, threshold);
+            if(regressions > 0) {
+                System.out.println(regressions + " scenario(s) slower than the baseline by more than "
+                                   + Math.round(threshold * 100) + "%");
+                System.exit(1);
+            }
+            System.out.println("No regression beyond " + Math.round(threshold * 100) + "%");
+        }
+    }
+
+    /**
+     * Run one scenario: a warm-up run, then REPETITIONS timed runs from
+     * the same seed.
+     * @param width The width of the grid.
+     * @param depth The depth of the grid.
+     * @param mix The name of the mix of species.
+     * @param threads The number of threads.
+     * @return The measurements of the fastest timed run.
+     */
+    public static Result run(int width, int depth, String mix, int threads)
+    {
+        long cells = (long) width * depth;
+        int steps = (int) Math.max(MIN_STEPS, Math.min(MAX_STEPS, CELL_STEPS / cells));
+        Simulator simulator = new Simulator(depth, width, true);
+        simulator.setThreads(threads);
+        setMix(simulator, mix);
+        // The warm-up lets the JIT compiler do its work. It runs from
+        // the simulation's own seed, as each timed run starts again
+        // from SEED anyway.
+        simulator.simulate(Math.max(MIN_STEPS, steps / 4));
+        Result best = null;
+        for(int repetition = 0; repetition < REPETITIONS; repetition++) {
+            Result result = time(simulator, steps);
+            if(best == null || result.stepsPerSecond > best.stepsPerSecond) {
+                best = result;
+            }
+        }
+        simulator.setThreads(1);
+        best.name = width + "x" + depth + "/" + mix + "/" + threads;
+        return best;
+    }
+
+    /**
+     * Time runs of a simulation from the seed, as many as it takes to
+     * step for at least MIN_RUN_NANOS. Only the stepping is timed, not
+     * the populating of the field before each run.
+     * @param simulator The simulation.
+     * @param steps The most steps to run.
+     * @return The measurements, without the scenario's name.
+     */
+    private static Result time(Simulator simulator, int steps)
+    {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threadBean instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean) threadBean : null;
+        System.gc();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long gcBefore = gcMillis();
+        long elapsed = 0;
+        long allocated = 0;
+        long totalSteps = 0;
+        int runSteps = 0;
+        while(elapsed < MIN_RUN_NANOS) {
+            simulator.setSeed(SEED);
+            long allocatedBefore = allocatedBytes(allocations);
+            long start = System.nanoTime();
+            simulator.simulate(steps);
+            elapsed += System.nanoTime() - start;
+            allocated += allocatedBytes(allocations) - allocatedBefore;
+            runSteps = simulator.getStep();
+            totalSteps += runSteps;
+        }
+        long gc = gcMillis() - gcBefore;
+        long peak = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        Result result = new Result();
+        result.steps = runSteps;
+        double seconds = elapsed / 1e9;
+        result.stepsPerSecond = totalSteps / seconds;
+        result.allocatedBytesPerSecond = allocatedBytes(allocations) < 0 ? -1 : allocated / seconds;
+        result.gcMillis = gc;
+        result.peakHeapBytes = peak;
+        return result;
+    }
+
+    /**
+     * Set the mix of species a simulation starts with.
+     * @param simulator The simulation.
+     * @param mix "default", "animals" (no humans, plants or plastic) or
+     *            "plants" (mostly plants and plastic, few animals).
+     */
+    private static void setMix(Simulator simulator, String mix)
+    {
+        double[] probabilities = simulator.getCreationProbabilities();
+        switch(mix) {
+            case "default":
+                // The simulation already starts with this mix.
+                return;
+            case "animals":
+                probabilities[Species.HUMAN] = 0;
+                probabilities[Species.PLANT] = 0;
+                probabilities[Species.PLASTIC] = 0;
+                break;
+            case "plants":
+                probabilities[Species.SHARK] = 0.005;
+                probabilities[Species.OTTER] = 0.005;
+                probabilities[Species.PLANT] = 0.4;
+                probabilities[Species.PLASTIC] = 0.3;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mix: " + mix);
+        }
+        // All at once, so the field is only populated once more.
+        simulator.setCreationProbabilities(probabilities);
+    }
+
+    /**
+     * @return The total time spent collecting garbage, in milliseconds.
+     */
+    private static long gcMillis()
+    {
+        long total = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(collector.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    /**
+     * Return the bytes allocated by every live thread so far. Threads
+     * that have ended are not counted, so this is only right while the
+     * threads of the simulation stay the same.
+     * @param allocations The source of the counts, or null if the JVM
+     *                    does not have one.
+     * @return The bytes, or -1 if they cannot be counted.
+     */
+    private static long allocatedBytes(com.sun.management.ThreadMXBean allocations)
+    {
+        if(allocations == null || !allocations.isThreadAllocatedMemorySupported()) {
+            return -1;
+        }
+        long total = 0;
+        for(long bytes : allocations.getThreadAllocatedBytes(allocations.getAllThreadIds())) {
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Write the results as JSON, one scenario per line.
+     * @param fileName The file to write.
+     * @param results The results.
+     * @param threads The number of threads.
+     * @throws IOException If the file could not be written.
+     */
+    private static void write(String fileName, List<Result> results, int threads) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(fileName)))) {
+            out.println("{");
+            out.println("  \"seed\": " + SEED + ",");
+            out.println("  \"threads\": " + threads + ",");
+            out.println("  \"java\": \"" + System.getProperty("java.version") + "\",");
+            out.println("  \"results\": [");
+            for(int i = 0; i < results.size(); i++) {
+                out.println("    " + results.get(i).toJson() + (i < results.size() - 1 ? "," : ""));
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    /**
+     * Read the steps and throughput of each scenario from a file written
+     * by an earlier run.
+     * @param fileName The file.
+     * @return The steps and the steps per second, by scenario name.
+     * @throws IOException If the file could not be read.
+     */
+    private static Map<String, double[]> readBaseline(String fileName) throws IOException
+    {
+        Map<String, double[]> baseline = new HashMap<>();
+        for(String line : Files.readAllLines(Paths.get(fileName))) {
+            Matcher matcher = RESULT.matcher(line);
+            if(matcher.find()) {
+                baseline.put(matcher.group(1), new double[] {
+                    Integer.parseInt(matcher.group(2)), Double.parseDouble(matcher.group(3))
+                });
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Compare the results with a baseline, printing the change of each
+     * scenario in the baseline. A scenario that ran a different number
+     * of steps no longer follows the same course from its seed, so its
+     * throughput is flagged as not comparable, and is not counted as a
+     * regression however much it changed.
+     * @param baseline The steps and steps per second, by scenario name.
+     * @param results The results.
+     * @param threshold The largest drop in throughput allowed, as a
+     *                  fraction of the baseline.
+     * @return The number of comparable scenarios that dropped by more.
+     */
+    private static int compare(Map<String, double[]> baseline, List<Result> results, double threshold)
+    {
+        int regressions = 0;
+        int incomparable = 0;
+        for(Result result : results) {
+            double[] before = baseline.get(result.name);
+            if(before == null) {
+                System.out.println(result.name + ": not in the baseline");
+                continue;
+            }
+            double change = result.stepsPerSecond / before[1] - 1;
+            boolean comparable = result.steps == (int) before[0];
+            boolean regressed = comparable && change < -threshold;
+            String course = comparable ? ""
+                : " (ran " + result.steps + " steps, not " + (int) before[0] + ": not comparable)";
+            System.out.println(String.format(Locale.ROOT, "%s: %.1f -> %.1f steps/s (%+.1f%%)%s%s",
+                                             result.name, before[1], result.stepsPerSecond,
+                                             change * 100, regressed ? " REGRESSION" : "", course));
+            if(regressed) {
+                regressions++;
+            }
+            if(!comparable) {
+                incomparable++;
+            }
+        }
+        if(incomparable > 0) {
+            System.out.println(incomparable + " scenario(s) not comparable with the baseline;"
+                               + " make a new baseline to compare them");
+        }
+        return regressions;
+    }
+
+    /**
+     * The measurements of one scenario.
+     */
+    public static class Result
+    {
+        // The scenario: size, mix and threads.
+        private String name;
+        // The number of steps of a run, fewer than asked for if the
+        // simulation stopped being viable.
+        private int steps;
+        // The throughput.
+        private double stepsPerSecond;
+        // The allocation rate, or -1 if it could not be measured.
+        private double allocatedBytesPerSecond;
+        // The time spent collecting garbage.
+        private long gcMillis;
+        // The most heap in use at once.
+        private long peakHeapBytes;
+
+        /**
+         * @return The measurements as a JSON object on one line.
+         */
+        public String toJson()
+        {
+            return String.format(Locale.ROOT,
+                "{\"name\": \"%s\", \"steps\": %d, \"stepsPerSecond\": %.2f, "
+                + "\"allocatedBytesPerSecond\": %.0f, \"gcMillis\": %d, \"peakHeapBytes\": %d}",
+                name, steps, stepsPerSecond, allocatedBytesPerSecond, gcMillis, peakHeapBytes);
+        }
+    }
+}
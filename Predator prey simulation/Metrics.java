@@ -0,0 +1,298 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Optional measurements of where the time of a step goes: a histogram
+ * of the length of the turns of each species, and counts of calls of
+ * some field and actor methods. They are taken only if the program is
+ * started with -Dsimulator.metrics=true. ENABLED is then a constant
+ * the JIT compiler sees through, so with the metrics off the checks
+ * around the measured code are compiled away and cost nothing.
+ *
+ * The metrics can be read here, printed with getReport, or watched
+ * through JMX (see register and MetricsMXBean).
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class Metrics
+{
+    // Whether the metrics are collected.
+    public static final boolean ENABLED = Boolean.getBoolean("simulator.metrics");
+
+    // Calls of Field.adjacentLocations.
+    public static final int ADJACENT_LOCATIONS = 0;
+    // Calls of Field.getFreeAdjacentLocations.
+    public static final int FREE_ADJACENT_LOCATIONS = 1;
+    // Calls of Actor.setLocation.
+    public static final int SET_LOCATION = 2;
+    // The number of call counters.
+    public static final int COUNTERS = 3;
+
+    // The name the metrics are registered under with JMX.
+    private static final String OBJECT_NAME = "PredatorPrey:type=Metrics";
+
+    // The length of the turns of each species, indexed by species
+    // code, or null if the metrics are not collected.
+    private static final LatencyHistogram[] turns = ENABLED ? makeHistograms() : null;
+    // The call counters, or null if the metrics are not collected.
+    private static final LongAdder[] calls = ENABLED ? makeCounters() : null;
+
+    /**
+     * Record the length of one turn of an actor or packed animal.
+     * Callers check ENABLED first, and read the start time only if it
+     * is set.
+     * @param code The species code of the actor.
+     * @param start The value of System.nanoTime at the start of the turn.
+     */
+    public static void recordTurn(int code, long start)
+    {
+        turns[code].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Count a call. Callers check ENABLED first.
+     * @param counter The counter, such as SET_LOCATION.
+     */
+    public static void count(int counter)
+    {
+        calls[counter].increment();
+    }
+
+    /**
+     * Return the histogram of the length of the turns of a species.
+     * @param code The species code.
+     * @return The histogram, or null if the metrics are not collected.
+     */
+    public static LatencyHistogram getTurns(int code)
+    {
+        return ENABLED ? turns[code] : null;
+    }
+
+    /**
+     * Return the number of calls counted.
+     * @param counter The counter, such as SET_LOCATION.
+     * @return The number of calls, or 0 if the metrics are not collected.
+     */
+    public static long getCalls(int counter)
+    {
+        return ENABLED ? calls[counter].sum() : 0;
+    }
+
+    /**
+     * Start collecting again from nothing.
+     */
+    public static void reset()
+    {
+        if(ENABLED) {
+            for(LatencyHistogram histogram : turns) {
+                histogram.reset();
+            }
+            for(LongAdder counter : calls) {
+                counter.reset();
+            }
+        }
+    }
+
+    /**
+     * Describe the metrics: for each species that has acted, the number
+     * of turns and their mean, median, 99th percentile and longest
+     * length; then the call counts.
+     * @return The description, one line per species or counter.
+     */
+    public static String getReport()
+    {
+        if(!ENABLED) {
+            return "Metrics off (run with -Dsimulator.metrics=true)\n";
+        }
+        StringBuilder report = new StringBuilder();
+        for(int code = 1; code < Species.count(); code++) {
+            LatencyHistogram histogram = turns[code];
+            if(histogram.getCount() > 0) {
+                report.append(Species.classOf(code).getName())
+                      .append(": turns=").append(histogram.getCount())
+                      .append(" mean=").append(histogram.getMean())
+                      .append("ns p50=").append(histogram.getPercentile(0.5))
+                      .append("ns p99=").append(histogram.getPercentile(0.99))
+                      .append("ns max=").append(histogram.getMax())
+                      .append("ns\n");
+            }
+        }
+        report.append("adjacentLocations=").append(getCalls(ADJACENT_LOCATIONS))
+              .append(" getFreeAdjacentLocations=").append(getCalls(FREE_ADJACENT_LOCATIONS))
+              .append(" setLocation=").append(getCalls(SET_LOCATION)).append('\n');
+        return report.toString();
+    }
+
+    /**
+     * Make the metrics visible through JMX, if they are collected and
+     * have not been registered already.
+     */
+    public static synchronized void register()
+    {
+        if(!ENABLED) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(!server.isRegistered(name)) {
+                server.registerMBean(new Bean(), name);
+            }
+        }
+        catch(JMException e) {
+            System.out.println("Could not register the metrics with JMX: " + e);
+        }
+    }
+
+    /**
+     * @return A histogram for each species code.
+     */
+    private static LatencyHistogram[] makeHistograms()
+    {
+        LatencyHistogram[] histograms = new LatencyHistogram[Species.MAX_SPECIES];
+        for(int code = 0; code < histograms.length; code++) {
+            histograms[code] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * @return The call counters.
+     */
+    private static LongAdder[] makeCounters()
+    {
+        LongAdder[] counters = new LongAdder[COUNTERS];
+        for(int i = 0; i < COUNTERS; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    /**
+     * The metrics as seen through JMX.
+     */
+    private static class Bean implements MetricsMXBean
+    {
+        /**
+         * @return true, as the bean is only registered then.
+         */
+        public boolean isEnabled()
+        {
+            return ENABLED;
+        }
+
+        /**
+         * @return The names of the species.
+         */
+        public String[] getSpeciesNames()
+        {
+            String[] names = new String[Species.count() - 1];
+            for(int code = 1; code < Species.count(); code++) {
+                names[code - 1] = Species.classOf(code).getName();
+            }
+            return names;
+        }
+
+        /**
+         * @return The number of turns of each species.
+         */
+        public long[] getActCounts()
+        {
+            long[] values = new long[Species.count() - 1];
+            for(int code = 1; code < Species.count(); code++) {
+                values[code - 1] = turns[code].getCount();
+            }
+            return values;
+        }
+
+        /**
+         * @return The mean turn of each species.
+         */
+        public long[] getActMeanNanos()
+        {
+            long[] values = new long[Species.count() - 1];
+            for(int code = 1; code < Species.count(); code++) {
+                values[code - 1] = turns[code].getMean();
+            }
+            return values;
+        }
+
+        /**
+         * @return The median turn of each species.
+         */
+        public long[] getActMedianNanos()
+        {
+            return percentiles(0.5);
+        }
+
+        /**
+         * @return The 99th percentile turn of each species.
+         */
+        public long[] getActP99Nanos()
+        {
+            return percentiles(0.99);
+        }
+
+        /**
+         * @return The longest turn of each species.
+         */
+        public long[] getActMaxNanos()
+        {
+            long[] values = new long[Species.count() - 1];
+            for(int code = 1; code < Species.count(); code++) {
+                values[code - 1] = turns[code].getMax();
+            }
+            return values;
+        }
+
+        /**
+         * @return The calls of Field.adjacentLocations.
+         */
+        public long getAdjacentLocationsCalls()
+        {
+            return getCalls(ADJACENT_LOCATIONS);
+        }
+
+        /**
+         * @return The calls of Field.getFreeAdjacentLocations.
+         */
+        public long getFreeAdjacentLocationsCalls()
+        {
+            return getCalls(FREE_ADJACENT_LOCATIONS);
+        }
+
+        /**
+         * @return The calls of Actor.setLocation.
+         */
+        public long getSetLocationCalls()
+        {
+            return getCalls(SET_LOCATION);
+        }
+
+        /**
+         * Start collecting again from nothing.
+         */
+        public void reset()
+        {
+            Metrics.reset();
+        }
+
+        /**
+         * Return a percentile of the turns of each species.
+         * @param fraction The fraction, such as 0.99.
+         * @return The percentiles.
+         */
+        private long[] percentiles(double fraction)
+        {
+            long[] values = new long[Species.count() - 1];
+            for(int code = 1; code < Species.count(); code++) {
+                values[code - 1] = turns[code].getPercentile(fraction);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * The view of the Metrics given to JMX clients such as JConsole. The
+ * arrays have one element for each species, in the order of
+ * getSpeciesNames; durations are in nanoseconds.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public interface MetricsMXBean
+{
+    /**
+     * @return Whether the metrics are being collected.
+     */
+    boolean isEnabled();
+
+    /**
+     * @return The names of the species.
+     */
+    String[] getSpeciesNames();
+
+    /**
+     * @return The number of turns timed for each species.
+     */
+    long[] getActCounts();
+
+    /**
+     * @return The mean length of a turn for each species.
+     */
+    long[] getActMeanNanos();
+
+    /**
+     * @return The median length of a turn for each species.
+     */
+    long[] getActMedianNanos();
+
+    /**
+     * @return The 99th percentile of the length of a turn for each
+     *         species.
+     */
+    long[] getActP99Nanos();
+
+    /**
+     * @return The longest turn for each species.
+     */
+    long[] getActMaxNanos();
+
+    /**
+     * @return The number of calls of Field.adjacentLocations.
+     */
+    long getAdjacentLocationsCalls();
+
+    /**
+     * @return The number of calls of Field.getFreeAdjacentLocations.
+     */
+    long getFreeAdjacentLocationsCalls();
+
+    /**
+     * @return The number of calls of Actor.setLocation.
+     */
+    long getSetLocationCalls();
+
+    /**
+     * Start collecting again from nothing.
+     */
+    void reset();
+}
@@ -0,0 +1,481 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks of the hot paths of the field and the actors, each
+ * run on fields of several sizes filled to several densities, so that
+ * a change to these classes can be measured before and after. Each
+ * benchmark is warmed up, so that the JIT compiler has done its work,
+ * then timed over several rounds; the mean and spread of the time per
+ * operation are printed, one line per benchmark, size and density.
+ *
+ * Run from the command line, all arguments optional:
+ *   java MicroBenchmark [-sizes 50,200] [-densities 0.2,0.8]
+ *                       [-rounds N] [-only NAME]
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class MicroBenchmark
+{
+    // The length of a warm-up or timed round, in nanoseconds.
+    private static final long ROUND_NANOS = 200_000_000L;
+    // The number of warm-up rounds.
+    private static final int WARMUP_ROUNDS = 3;
+    // The seed of every field, so that runs can be compared.
+    private static final long SEED = 1111;
+
+    // Results of the benchmarks, kept so the work cannot be optimized
+    // away.
+    private static volatile long sink;
+
+    /**
+     * Run the benchmarks.
+     * @param args The arguments, as described above.
+     */
+    public static void main(String[] args)
+    {
+        int[] sizes = {50, 200, 500};
+        double[] densities = {0.2, 0.5, 0.8};
+        int rounds = 5;
+        String only = null;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-sizes":
+                    String[] s = args[++i].split(",");
+                    sizes = new int[s.length];
+                    for(int k = 0; k < s.length; k++) {
+                        sizes[k] = Integer.parseInt(s[k]);
+                    }
+                    break;
+                case "-densities":
+                    String[] d = args[++i].split(",");
+                    densities = new double[d.length];
+                    for(int k = 0; k < d.length; k++) {
+                        densities[k] = Double.parseDouble(d[k]);
+                    }
+                    break;
+                case "-rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                case "-only":
+                    only = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        Randomizer.setThreadRandom(new RandomStream(SEED));
+        System.out.printf("%-26s %6s %8s %12s %10s%n", "benchmark", "size", "density", "ns/op", "+-");
+        for(Bench bench : benchmarks()) {
+            if(only != null && !bench.name.equals(only)) {
+                continue;
+            }
+            for(int size : sizes) {
+                for(double density : densities) {
+                    double[] result = measure(bench, size, density, rounds);
+                    System.out.printf("%-26s %6d %8.2f %12.1f %10.1f%n",
+                                      bench.name, size, density, result[0], result[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Time a benchmark on one field.
+     * @param bench The benchmark.
+     * @param size The depth and width of the field.
+     * @param density The fraction of cells occupied.
+     * @param rounds The number of timed rounds.
+     * @return The mean time per operation in nanoseconds, and its
+     *         standard deviation across the rounds.
+     */
+    public static double[] measure(Bench bench, int size, double density, int rounds)
+    {
+        bench.setUp(size, density);
+        for(int round = 0; round < WARMUP_ROUNDS; round++) {
+            round(bench);
+        }
+        double[] times = new double[rounds];
+        double sum = 0;
+        for(int round = 0; round < rounds; round++) {
+            times[round] = round(bench);
+            sum += times[round];
+        }
+        double mean = sum / rounds;
+        double squares = 0;
+        for(double time : times) {
+            squares += (time - mean) * (time - mean);
+        }
+        return new double[] {mean, Math.sqrt(squares / rounds)};
+    }
+
+    /**
+     * Run a benchmark in batches for about ROUND_NANOS.
+     * @param bench The benchmark.
+     * @return The time per operation in nanoseconds.
+     */
+    private static double round(Bench bench)
+    {
+        long ops = 0;
+        long time = 0;
+        long result = 0;
+        while(time < ROUND_NANOS) {
+            bench.prepare();
+            long start = System.nanoTime();
+            result += bench.run();
+            time += System.nanoTime() - start;
+            ops += bench.operations();
+        }
+        sink += result;
+        return (double) time / ops;
+    }
+
+    /**
+     * @return Every benchmark.
+     */
+    public static List<Bench> benchmarks()
+    {
+        List<Bench> benchmarks = new ArrayList<>();
+        benchmarks.add(new CellBench("adjacentLocations") {
+            protected long visit(Location location)
+            {
+                return field.adjacentLocations(location).size();
+            }
+        });
+        benchmarks.add(new CellBench("getFreeAdjacentLocations") {
+            protected long visit(Location location)
+            {
+                return field.getFreeAdjacentLocations(location).size();
+            }
+        });
+        benchmarks.add(new CellBench("freeAdjacentLocation") {
+            protected long visit(Location location)
+            {
+                return field.freeAdjacentLocation(location) == null ? 0 : 1;
+            }
+        });
+        benchmarks.add(new CellBench("Location.hashCode") {
+            // A map from every location of the field.
+            private Map<Location, Location> map = new HashMap<>();
+
+            protected void fill()
+            {
+                map.clear();
+                for(Location location : cells) {
+                    map.put(location, location);
+                }
+            }
+
+            protected long visit(Location location)
+            {
+                // A new location, found by equality rather than identity.
+                Location copy = new Location(location.getRow(), location.getCol());
+                return location.hashCode() + (map.get(copy) == location ? 1 : 0);
+            }
+        });
+        benchmarks.add(new ActBench("Shark.act", Species.SHARK));
+        benchmarks.add(new ActBench("Otter.act", Species.OTTER));
+        benchmarks.add(new CellBench("FieldStats") {
+            // The stats being counted.
+            private FieldStats stats = new FieldStats();
+
+            // The field keeps its own population counts, which the
+            // stats would otherwise read, so the cells are counted
+            // one by one here, as a view without those counts would.
+            public long run()
+            {
+                stats.reset();
+                long counted = super.run();
+                stats.countFinished();
+                return counted + stats.getPopulationDetails(field).length();
+            }
+
+            protected long visit(Location location)
+            {
+                Object occupant = field.getObjectAt(location);
+                if(occupant == null) {
+                    return 0;
+                }
+                stats.incrementCount(occupant.getClass(), 1);
+                return 1;
+            }
+        });
+        return benchmarks;
+    }
+
+    /**
+     * A benchmark on a field filled with shrimp, sharks and otters.
+     */
+    public abstract static class Bench
+    {
+        // The name printed with the results.
+        protected String name;
+        // The field.
+        protected Field field;
+        // The occupied cells, and then the empty ones.
+        protected List<Location> cells;
+
+        /**
+         * Create a benchmark.
+         * @param name The name printed with the results.
+         */
+        public Bench(String name)
+        {
+            this.name = name;
+            cells = new ArrayList<>();
+        }
+
+        /**
+         * Make the field for a round of runs.
+         * @param size The depth and width of the field.
+         * @param density The fraction of cells occupied.
+         */
+        public void setUp(int size, double density)
+        {
+            if(field == null || field.getDepth() != size) {
+                field = new Field(size, size);
+            }
+            else {
+                // A field is costly to make, so the last one is reused.
+                field.clear();
+            }
+            Random rand = Randomizer.getRandom();
+            cells.clear();
+            List<Location> empty = new ArrayList<>();
+            for(int row = 0; row < size; row++) {
+                for(int col = 0; col < size; col++) {
+                    Location location = field.getLocation(row, col);
+                    if(rand.nextDouble() < density) {
+                        double kind = rand.nextDouble();
+                        if(kind < 0.1) {
+                            new Shark(true, field, location);
+                        }
+                        else if(kind < 0.2) {
+                            new Otter(true, field, location);
+                        }
+                        else {
+                            new Shrimp(true, field, location);
+                        }
+                        cells.add(location);
+                    }
+                    else {
+                        empty.add(location);
+                    }
+                }
+            }
+            cells.addAll(empty);
+            fill();
+        }
+
+        /**
+         * Finish setting up, once the field is filled.
+         */
+        protected void fill()
+        {
+        }
+
+        /**
+         * Get ready for the next run. This is not timed.
+         */
+        public void prepare()
+        {
+        }
+
+        /**
+         * Do the work being timed.
+         * @return A result of the work, so it is not optimized away.
+         */
+        public abstract long run();
+
+        /**
+         * @return The number of operations in a run.
+         */
+        public int operations()
+        {
+            return 1;
+        }
+    }
+
+    /**
+     * A benchmark that visits every cell of the field once per run.
+     */
+    private abstract static class CellBench extends Bench
+    {
+        /**
+         * Create a benchmark.
+         * @param name The name printed with the results.
+         */
+        private CellBench(String name)
+        {
+            super(name);
+        }
+
+        /**
+         * Visit every cell.
+         * @return The sum of the visits.
+         */
+        public long run()
+        {
+            long sum = 0;
+            for(int i = 0; i < cells.size(); i++) {
+                sum += visit(cells.get(i));
+            }
+            return sum;
+        }
+
+        /**
+         * @return The number of cells.
+         */
+        public int operations()
+        {
+            return cells.size();
+        }
+
+        /**
+         * Visit one cell.
+         * @param location The cell.
+         * @return A result of the visit.
+         */
+        protected abstract long visit(Location location);
+    }
+
+    /**
+     * A benchmark that lets every animal of one species act once per
+     * run, each in its neighbourhood of the filled field. An animal
+     * only changes the cells next to it, so before each run, without
+     * being timed, those cells are filled again with new members of
+     * the species they first held, and every run starts from the same
+     * kind of neighbourhoods.
+     */
+    private static class ActBench extends Bench
+    {
+        // The species that acts.
+        private int code;
+        // The animals that act.
+        private List<Actor> actors;
+        // The newborns of a run.
+        private List<Actor> newborns;
+        // The cells next to or holding an animal that acts, each once,
+        // and the species each held when the field was filled.
+        private List<Location> around;
+        private int[] kinds;
+
+        /**
+         * Create a benchmark.
+         * @param name The name printed with the results.
+         * @param code The species that acts.
+         */
+        private ActBench(String name, int code)
+        {
+            super(name);
+            this.code = code;
+            actors = new ArrayList<>();
+            newborns = new ArrayList<>();
+            around = new ArrayList<>();
+        }
+
+        /**
+         * Fill the field, and remember what the cells around the
+         * animals that act held.
+         * @param size The depth and width of the field.
+         * @param density The fraction of cells occupied.
+         */
+        public void setUp(int size, double density)
+        {
+            super.setUp(size, density);
+            around.clear();
+            boolean[] seen = new boolean[size * size];
+            for(Location location : cells) {
+                if(field.getSpeciesCode(location) == code) {
+                    // The animal itself first, so the animals act in
+                    // the order of the cells.
+                    note(location, seen);
+                    int adjacent = field.adjacentMask(location);
+                    for(int d = 0; d < Field.DIRECTIONS; d++) {
+                        if((adjacent & (1 << d)) != 0) {
+                            note(field.adjacentLocation(location, d), seen);
+                        }
+                    }
+                }
+            }
+            kinds = new int[around.size()];
+            for(int i = 0; i < kinds.length; i++) {
+                kinds[i] = field.getSpeciesCode(around.get(i));
+            }
+        }
+
+        /**
+         * Add a cell to those around the animals, unless it is there
+         * already.
+         * @param location The cell.
+         * @param seen Which cells are there already, by index.
+         */
+        private void note(Location location, boolean[] seen)
+        {
+            int index = field.index(location);
+            if(!seen[index]) {
+                seen[index] = true;
+                around.add(location);
+            }
+        }
+
+        /**
+         * Fill the cells around the animals again as they were first
+         * filled, and find the animals that act.
+         */
+        public void prepare()
+        {
+            for(Location location : around) {
+                field.clear(location);
+            }
+            actors.clear();
+            for(int i = 0; i < kinds.length; i++) {
+                Location location = around.get(i);
+                Actor actor;
+                if(kinds[i] == Species.SHARK) {
+                    actor = new Shark(true, field, location);
+                }
+                else if(kinds[i] == Species.OTTER) {
+                    actor = new Otter(true, field, location);
+                }
+                else if(kinds[i] == Species.SHRIMP) {
+                    actor = new Shrimp(true, field, location);
+                }
+                else {
+                    continue;
+                }
+                if(kinds[i] == code) {
+                    actors.add(actor);
+                }
+            }
+        }
+
+        /**
+         * Let each animal act once.
+         * @return The number of newborns.
+         */
+        public long run()
+        {
+            newborns.clear();
+            for(int i = 0; i < actors.size(); i++) {
+                Actor actor = actors.get(i);
+                if(actor.isAlive()) {
+                    actor.act(newborns);
+                }
+            }
+            return newborns.size();
+        }
+
+        /**
+         * @return The number of animals that act.
+         */
+        public int operations()
+        {
+            return Math.max(actors.size(), 1);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import java.util.Random;
+
+/**
+ * Step through the neighbours of a cell in a random order without
+ * creating any objects. The order is taken from a small fixed table
+ * of shuffled directions, so starting a new scan only costs a single
+ * random number.
+ *
+ * A cursor is reused: call reset to start a new scan, then hasNext
+ * and next (for packed indices) or nextLocation (for locations) to
+ * visit the neighbouring cells. A cursor must only be used by one
+ * thread; it takes its random numbers from Randomizer, which gives
+ * each thread of a parallel step its own generator.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class NeighbourCursor
+{
+    // The number of shuffled direction orders in the table.
+    private static final int ORDERS = 256;
+    // Seed for building the table, so that it is the same on every run.
+    private static final int ORDER_SEED = 8191;
+    // Shuffled orders of the eight directions.
+    private static final byte[][] orders = makeOrders();
+
+    // The field whose cells are visited.
+    private Field field;
+    // The cell whose neighbours are being visited.
+    private int centre;
+    // The location whose neighbours are being visited, if the scan
+    // was started from a location.
+    private Location centreLocation;
+    // The directions still to be visited, one bit per direction.
+    private int mask;
+    // The order in which the directions are visited.
+    private byte[] order;
+    // Position of the next direction to try in the order.
+    private int position;
+    // The direction found by the last call to hasNext, or -1.
+    private int nextDirection;
+
+    /**
+     * Create a cursor over the cells of the given field.
+     * @param field The field whose cells are visited.
+     */
+    public NeighbourCursor(Field field)
+    {
+        this.field = field;
+        nextDirection = -1;
+        position = Field.DIRECTIONS;
+    }
+
+    /**
+     * Start a new scan over the given directions around a cell.
+     * @param centre The packed index of the cell.
+     * @param mask The directions to visit, one bit per direction.
+     * @return This cursor.
+     */
+    public NeighbourCursor reset(int centre, int mask)
+    {
+        this.centre = centre;
+        centreLocation = null;
+        this.mask = mask;
+        order = orders[Randomizer.getRandom().nextInt(ORDERS)];
+        position = 0;
+        nextDirection = -1;
+        return this;
+    }
+
+    /**
+     * Start a new scan over the given directions around a location.
+     * @param centre The location.
+     * @param mask The directions to visit, one bit per direction.
+     * @return This cursor.
+     */
+    public NeighbourCursor reset(Location centre, int mask)
+    {
+        this.centre = -1;
+        centreLocation = centre;
+        this.mask = mask;
+        order = orders[Randomizer.getRandom().nextInt(ORDERS)];
+        position = 0;
+        nextDirection = -1;
+        return this;
+    }
+
+    /**
+     * @return true if there is another neighbour to visit.
+     */
+    public boolean hasNext()
+    {
+        while(nextDirection < 0 && position < Field.DIRECTIONS) {
+            int direction = order[position++];
+            if((mask & (1 << direction)) != 0) {
+                nextDirection = direction;
+            }
+        }
+        return nextDirection >= 0;
+    }
+
+    /**
+     * Return the next neighbour in the scan.
+     * @return The packed index of the neighbouring cell, or -1 if the
+     *         scan is finished.
+     */
+    public int next()
+    {
+        if(!hasNext()) {
+            return -1;
+        }
+        int direction = nextDirection;
+        nextDirection = -1;
+        if(centreLocation != null) {
+            return field.index(field.adjacentLocation(centreLocation, direction));
+        }
+        return field.neighbour(centre, direction);
+    }
+
+    /**
+     * Return the next neighbour in the scan.
+     * @return The location of the neighbouring cell, or null if the
+     *         scan is finished.
+     */
+    public Location nextLocation()
+    {
+        if(!hasNext()) {
+            return null;
+        }
+        int direction = nextDirection;
+        nextDirection = -1;
+        if(centreLocation != null) {
+            return field.adjacentLocation(centreLocation, direction);
+        }
+        return field.getLocation(field.neighbour(centre, direction));
+    }
+
+    /**
+     * Build the table of shuffled direction orders.
+     * @return The table.
+     */
+    private static byte[][] makeOrders()
+    {
+        Random random = new Random(ORDER_SEED);
+        byte[][] table = new byte[ORDERS][Field.DIRECTIONS];
+        for(int i = 0; i < ORDERS; i++) {
+            byte[] order = table[i];
+            for(int d = 0; d < order.length; d++) {
+                order[d] = (byte) d;
+            }
+            for(int d = order.length - 1; d > 0; d--) {
+                int other = random.nextInt(d + 1);
+                byte swap = order[d];
+                order[d] = order[other];
+                order[other] = swap;
+            }
+        }
+        return table;
+    }
+}
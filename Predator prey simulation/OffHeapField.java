@@ -0,0 +1,248 @@
+/**
+ * A field whose cells are kept outside the Java heap, in an OffHeapGrid.
+ * It is meant for grids with billions of cells, where an array of cells
+ * on the heap would not fit or would make garbage collection too slow.
+ *
+ * The neighbour masks are worked out from the species codes in the grid,
+ * so nothing else is kept per cell. The field can be handed from one
+ * Simulator to the next with its actors. The grid can also be given to
+ * more than one field over its life, or mapped again from its file by
+ * a later run; a new field keeps only the species of each cell, and a
+ * Simulator on it makes new actors in their places.
+ *
+ * Locations are kept in a cache of fixed size, so that the cells near
+ * the actors, which are asked for again and again, are not created
+ * afresh each time. The whole grid has a shared location while it fits
+ * in the cache.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class OffHeapField extends CoordinateField
+{
+    // The largest number of locations kept, a power of two.
+    private static final int MAX_LOCATIONS = 1 << 20;
+
+    // The storage for the cells.
+    private OffHeapGrid grid;
+    // Recently used locations, each in the slot given by its cell.
+    private Location[] locations;
+
+    /**
+     * Represent a field of the given dimensions, in direct memory.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public OffHeapField(int depth, int width)
+    {
+        this(new OffHeapGrid(depth, width));
+    }
+
+    /**
+     * Represent a field over an existing grid. Any actors in the grid
+     * belong to the field that put them there, and are forgotten.
+     * @param grid The storage for the cells.
+     */
+    public OffHeapField(OffHeapGrid grid)
+    {
+        super(grid.getDepth(), grid.getWidth());
+        this.grid = grid;
+        long cells = (long) getDepth() * getWidth();
+        locations = new Location[(int) Math.min(MAX_LOCATIONS, Long.highestOneBit(2 * cells - 1))];
+        if(!grid.isBlank()) {
+            // The grid was filled by an earlier field.
+            grid.forgetActors();
+            for(long cell = 0; cell < (long) getDepth() * getWidth(); cell++) {
+                int code = grid.getCode(cell) & OffHeapGrid.SPECIES;
+                if(code != Species.EMPTY) {
+                    addPopulation(code, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The storage for the cells.
+     */
+    public OffHeapGrid getGrid()
+    {
+        return grid;
+    }
+
+    /**
+     * Empty the field.
+     */
+    public void clear()
+    {
+        grid.clear();
+        resetPopulation();
+    }
+
+    /**
+     * Clear the given row and column.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void clear(int row, int col)
+    {
+        if(isFrozen()) {
+            return;
+        }
+        long cell = cell(row, col);
+        int previous = grid.getCode(cell) & OffHeapGrid.SPECIES;
+        if(previous != Species.EMPTY) {
+            addPopulation(previous, -1);
+            grid.remove(cell);
+        }
+    }
+
+    /**
+     * Place an animal at the given location.
+     * If there is already an animal at the location it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void place(Object animal, int row, int col)
+    {
+        if(isFrozen()) {
+            return;
+        }
+        if(animal == null) {
+            clear(row, col);
+            return;
+        }
+        long cell = cell(row, col);
+        int previous = grid.getCode(cell) & OffHeapGrid.SPECIES;
+        if(previous != Species.EMPTY) {
+            addPopulation(previous, -1);
+        }
+        int code = Species.codeOf(animal);
+        addPopulation(code, 1);
+        if(Species.isMale(animal)) {
+            code |= OffHeapGrid.MALE;
+        }
+        grid.put(cell, animal, code);
+    }
+
+    /**
+     * Return the animal at the given location, if any.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The animal at the given location, or null if there is none.
+     */
+    public Object getObjectAt(int row, int col)
+    {
+        return grid.getActor(cell(row, col));
+    }
+
+    /**
+     * Return the location of the given row and column, from the cache
+     * if it holds it.
+     * @param row The row.
+     * @param col The column.
+     * @return The location of the cell.
+     */
+    public Location getLocation(int row, int col)
+    {
+        int slot = (int) cell(row, col) & (locations.length - 1);
+        Location location = locations[slot];
+        if(location == null || location.getRow() != row || location.getCol() != col) {
+            location = new Location(row, col);
+            locations[slot] = location;
+        }
+        return location;
+    }
+
+    /**
+     * Return the species code of the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The code of the cell's occupant, or Species.EMPTY.
+     */
+    public int getSpeciesCode(int row, int col)
+    {
+        return grid.getCode(cell(row, col)) & OffHeapGrid.SPECIES;
+    }
+
+    /**
+     * Return the directions from a location that lead to a neighbour
+     * holding one of the given species.
+     * @param location The location.
+     * @param species The set of species to look for.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int speciesMask(Location location, int species)
+    {
+        // Empty cells have code 0, which is never in a species set.
+        return matching(location, species & ~1, 0);
+    }
+
+    /**
+     * Return the directions from a location that lead to a neighbour
+     * holding a male animal.
+     * @param location The location.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int maleMask(Location location)
+    {
+        return matching(location, 0, OffHeapGrid.MALE);
+    }
+
+    /**
+     * Return the directions from a location that lead to an empty cell.
+     * @param location The location.
+     * @return A mask with one bit set for each free direction.
+     */
+    public int freeMask(Location location)
+    {
+        return matching(location, 1, 0);
+    }
+
+    /**
+     * The grid shares one table of actors between all its cells, so
+     * only one thread can update the field at a time.
+     * @return 0, since the field cannot be split into strips.
+     */
+    public int getStripUnit()
+    {
+        return 0;
+    }
+
+    /**
+     * Find the neighbours of a location whose codes match.
+     * @param location The location.
+     * @param species A set of species codes to match.
+     * @param flags Flag bits of the code to match.
+     * @return A mask with one bit set for each matching direction.
+     */
+    private int matching(Location location, int species, int flags)
+    {
+        int row = location.getRow();
+        int col = location.getCol();
+        int inside = directionsInside(row, col);
+        int found = 0;
+        for(int d = 0; d < DIRECTIONS; d++) {
+            if((inside & (1 << d)) != 0) {
+                int code = grid.getCode(cell(row + ROW_STEPS[d], col + COL_STEPS[d]));
+                if((species & (1 << (code & OffHeapGrid.SPECIES))) != 0 || (code & flags) != 0) {
+                    found |= 1 << d;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Return the position of a cell in the grid.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The cell, row * width + col.
+     */
+    private long cell(int row, int col)
+    {
+        checkBounds(row, col);
+        return (long) row * getWidth() + col;
+    }
+}
@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The cell storage of an OffHeapField, kept outside the Java heap.
+ * For every cell the grid holds a one-byte species code (with the
+ * animal's sex in one bit) and a four-byte handle for the actor in the
+ * cell. The actors themselves are kept in a table on the heap whose size
+ * follows the number of actors, not the size of the grid, so heap use
+ * stays flat however big the grid is and the garbage collector never
+ * has to scan the cells.
+ *
+ * The storage is either direct memory or a memory-mapped file, split
+ * into chunks of at most 1GB. A grid is independent of any Field or
+ * Simulator: a new OffHeapField can be made over an existing grid, and
+ * a file can be mapped again by a later run. Only the species codes
+ * carry over to a new field, since the actors belong to the field that
+ * made them (see forgetActors). The memory is released when the grid
+ * is no longer reachable.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class OffHeapGrid
+{
+    // The bit of a cell's code that marks a male animal.
+    public static final int MALE = 0x10;
+    // Mask for the species part of a cell's code.
+    public static final int SPECIES = 0x0F;
+    // Each chunk of storage holds 2 to the power of CHUNK_SHIFT bytes.
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    // The number of bytes in a handle.
+    private static final int HANDLE_BYTES = 4;
+    // Zeros for clearing storage.
+    private static final byte[] ZEROS = new byte[1 << 16];
+
+    // The depth and width of the grid.
+    private int depth, width;
+    // The species code of each cell.
+    private ByteBuffer[] codes;
+    // The actor handle of each cell, 0 for none.
+    private ByteBuffer[] handles;
+    // The actors, indexed by handle. Handle 0 is never used.
+    private Object[] actors;
+    // Handles that have been released and can be given out again.
+    private int[] freeHandles;
+    // The number of released handles.
+    private int freeCount;
+    // The lowest handle that has never been given out.
+    private int nextHandle;
+    // Whether any cell may hold a code.
+    private boolean written;
+
+    /**
+     * Create a grid in direct memory.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public OffHeapGrid(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        long cells = (long) depth * width;
+        codes = allocate(cells);
+        handles = allocate(cells * HANDLE_BYTES);
+        resetActors();
+    }
+
+    /**
+     * Create a grid in a memory-mapped file. A new file is left sparse
+     * until cells are written. An existing file, written by an earlier
+     * grid of the same size, keeps the species codes of its cells but
+     * none of their actors (see forgetActors).
+     * @param file The file to map.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     * @throws IOException if the file cannot be created or mapped, or
+     *         holds a grid of another size.
+     */
+    public OffHeapGrid(Path file, int depth, int width) throws IOException
+    {
+        this.depth = depth;
+        this.width = width;
+        long cells = (long) depth * width;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if(size != 0 && size != cells * (1 + HANDLE_BYTES)) {
+                throw new IOException(file + " does not hold a grid of " + depth + " by " + width);
+            }
+            codes = map(channel, 0, cells);
+            handles = map(channel, cells, cells * HANDLE_BYTES);
+            written = size != 0;
+        }
+        resetActors();
+        if(written) {
+            // The handles were given out by the grid of an earlier run.
+            forgetActors();
+        }
+    }
+
+    /**
+     * @return The depth of the grid.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the grid.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Return the code of a cell.
+     * @param cell The cell, row * width + col.
+     * @return The species code, with the MALE bit set for a male animal.
+     */
+    public int getCode(long cell)
+    {
+        return codes[(int) (cell >>> CHUNK_SHIFT)].get((int) (cell & CHUNK_MASK));
+    }
+
+    /**
+     * Return the actor in a cell.
+     * @param cell The cell, row * width + col.
+     * @return The actor, or null if the cell is empty.
+     */
+    public Object getActor(long cell)
+    {
+        return actors[getHandle(cell)];
+    }
+
+    /**
+     * Put an actor in a cell, replacing anything already there.
+     * @param cell The cell, row * width + col.
+     * @param actor The actor.
+     * @param code The actor's species code, including the MALE bit.
+     */
+    public void put(long cell, Object actor, int code)
+    {
+        int handle = getHandle(cell);
+        if(handle == 0) {
+            handle = newHandle();
+            setHandle(cell, handle);
+        }
+        actors[handle] = actor;
+        codes[(int) (cell >>> CHUNK_SHIFT)].put((int) (cell & CHUNK_MASK), (byte) code);
+        written = true;
+    }
+
+    /**
+     * Empty a cell.
+     * @param cell The cell, row * width + col.
+     */
+    public void remove(long cell)
+    {
+        int handle = getHandle(cell);
+        if(handle != 0) {
+            actors[handle] = null;
+            freeHandles[freeCount++] = handle;
+            setHandle(cell, 0);
+            codes[(int) (cell >>> CHUNK_SHIFT)].put((int) (cell & CHUNK_MASK), (byte) 0);
+        }
+    }
+
+    /**
+     * Empty every cell.
+     */
+    public void clear()
+    {
+        zero(codes);
+        zero(handles);
+        resetActors();
+        written = false;
+    }
+
+    /**
+     * Let go of every actor, but keep the species codes of the cells
+     * they were in. A field made over the grid afterwards sees those
+     * cells as occupied, with no actor in them.
+     */
+    public void forgetActors()
+    {
+        for(long cell = 0; cell < (long) depth * width; cell++) {
+            if(getHandle(cell) != 0) {
+                setHandle(cell, 0);
+            }
+        }
+        resetActors();
+    }
+
+    /**
+     * @return true if no cell holds a code: nothing has been put in
+     *         the grid since it was made or last cleared.
+     */
+    public boolean isBlank()
+    {
+        return !written;
+    }
+
+    /**
+     * @return The number of actors in the grid.
+     */
+    public int getActorCount()
+    {
+        return nextHandle - 1 - freeCount;
+    }
+
+    /**
+     * Return the handle of the actor in a cell.
+     * @param cell The cell, row * width + col.
+     * @return The handle, or 0 if the cell is empty.
+     */
+    private int getHandle(long cell)
+    {
+        long offset = cell * HANDLE_BYTES;
+        return handles[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Set the handle of the actor in a cell.
+     * @param cell The cell, row * width + col.
+     * @param handle The handle, or 0 for none.
+     */
+    private void setHandle(long cell, int handle)
+    {
+        long offset = cell * HANDLE_BYTES;
+        handles[(int) (offset >>> CHUNK_SHIFT)].putInt((int) (offset & CHUNK_MASK), handle);
+    }
+
+    /**
+     * Give out an unused handle, growing the actor table if necessary.
+     * @return The handle.
+     */
+    private int newHandle()
+    {
+        if(freeCount > 0) {
+            return freeHandles[--freeCount];
+        }
+        if(nextHandle == actors.length) {
+            Object[] larger = new Object[actors.length * 2];
+            System.arraycopy(actors, 0, larger, 0, actors.length);
+            actors = larger;
+            int[] largerFree = new int[larger.length];
+            System.arraycopy(freeHandles, 0, largerFree, 0, freeCount);
+            freeHandles = largerFree;
+        }
+        return nextHandle++;
+    }
+
+    /**
+     * Forget every actor.
+     */
+    private void resetActors()
+    {
+        actors = new Object[1024];
+        freeHandles = new int[actors.length];
+        freeCount = 0;
+        nextHandle = 1;
+    }
+
+    /**
+     * Allocate direct memory in chunks.
+     * @param bytes The number of bytes needed.
+     * @return The chunks.
+     */
+    private static ByteBuffer[] allocate(long bytes)
+    {
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(bytes)];
+        for(int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(chunkSize(bytes, i)).order(ByteOrder.nativeOrder());
+        }
+        return chunks;
+    }
+
+    /**
+     * Map part of a file in chunks.
+     * @param channel The file.
+     * @param start The position of the first byte in the file.
+     * @param bytes The number of bytes needed.
+     * @return The chunks.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private static ByteBuffer[] map(FileChannel channel, long start, long bytes) throws IOException
+    {
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(bytes)];
+        for(int i = 0; i < chunks.length; i++) {
+            long position = start + ((long) i << CHUNK_SHIFT);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkSize(bytes, i))
+                               .order(ByteOrder.nativeOrder());
+        }
+        return chunks;
+    }
+
+    /**
+     * @return The number of chunks needed for the given number of bytes.
+     */
+    private static int chunkCount(long bytes)
+    {
+        return Math.max(1, (int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT));
+    }
+
+    /**
+     * @return The size of one of the chunks for the given number of bytes.
+     */
+    private static int chunkSize(long bytes, int chunk)
+    {
+        return (int) Math.min(1L << CHUNK_SHIFT, bytes - ((long) chunk << CHUNK_SHIFT));
+    }
+
+    /**
+     * Fill chunks of storage with zeros.
+     * @param chunks The chunks.
+     */
+    private static void zero(ByteBuffer[] chunks)
+    {
+        for(ByteBuffer chunk : chunks) {
+            for(int position = 0; position < chunk.capacity(); position += ZEROS.length) {
+                chunk.put(position, ZEROS, 0, Math.min(ZEROS.length, chunk.capacity() - position));
+            }
+        }
+    }
+}
@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -22,13 +21,23 @@ public class Otter extends Animal
     private static final double BREEDING_PROBABILITY = 0.40;
     // The maximum number of births.
     private static final int MAX_LITTER_SIZE = 5;
+    // The food value of an otter to whatever eats it.
+    private static final int PREY_VALUE = 9;
     // The food value of a single shrimp. In effect, this is the
     // number of steps an otter can go before it has to eat again.
     private static final int SHRIMP_FOOD_VALUE = 18;
     // The food value of a single plankton.
     private static final int PLANKTON_FOOD_VALUE = 18;
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    // The species set of what an otter will eat, including plastic.
+    private static final int FOOD = Species.bit(Species.SHRIMP) | Species.bit(Species.PLANKTON)
+        | Species.bit(Species.PLASTIC);
+    // The food value of each species an otter eats, indexed by species code.
+    private static final int[] FOOD_VALUES = new int[Species.MAX_SPECIES];
+
+    static {
+        FOOD_VALUES[Species.SHRIMP] = SHRIMP_FOOD_VALUE;
+        FOOD_VALUES[Species.PLANKTON] = PLANKTON_FOOD_VALUE;
+    }
 
     // Individual characteristics (instance fields).
     // The otter's age.
@@ -47,8 +56,9 @@ public class Otter extends Animal
      */
     public Otter(boolean randomAge, Field field, Location location)
     {
-        super(field, location, 9);
+        super(field, location, PREY_VALUE);
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(SHRIMP_FOOD_VALUE + PLANKTON_FOOD_VALUE);
         }
@@ -58,6 +68,38 @@ public class Otter extends Animal
         }
     }
 
+    /**
+     * Return a newborn otter, as made with randomAge false, reusing a
+     * dead one from the ActorPool if there is one.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn.
+     */
+    public static Otter obtain(Field field, Location location)
+    {
+        Census.record(Census.BIRTHS, Species.OTTER);
+        Otter otter = (Otter) ActorPool.get().take(Species.OTTER);
+        if(otter == null) {
+            return new Otter(false, field, location);
+        }
+        otter.rebirth(field, location);
+        otter.age = 0;
+        otter.foodLevel = SHRIMP_FOOD_VALUE + PLANKTON_FOOD_VALUE;
+        return otter;
+    }
+
+    /**
+     * Create an empty herd of otters for HerdEngine. Packed otters follow
+     * the same rules as Otter objects.
+     * @return The herd.
+     */
+    public static Herd herd()
+    {
+        return new Herd(Species.OTTER, Species.OTTER, BREEDING_AGE, MAX_AGE,
+                        BREEDING_PROBABILITY, MAX_LITTER_SIZE, FOOD, FOOD_VALUES,
+                        SHRIMP_FOOD_VALUE + PLANKTON_FOOD_VALUE, true, PREY_VALUE);
+    }
+
     /**
      * This is what the otter does most of the time - it swims 
      * around. Sometimes it will breed or die of old age.
@@ -82,11 +124,11 @@ public class Otter extends Animal
             Location newLocation = findFood();
             if(newLocation == null && getField() != null) { 
                 // No food found - try to move to a free location.
-                newLocation = getField().freeAdjacentLocation(getLocation());
+                newLocation = getField().claimFreeAdjacentLocation(this, getLocation());
             }
             // See if it was possible to move.
             if(newLocation != null) {
-                setLocation(newLocation);
+                moveTo(newLocation);
             }
             else {
                 // Overcrowding.
@@ -95,6 +137,51 @@ public class Otter extends Animal
         }
     }
 
+    /**
+     * Plan this otter's synchronous step. It ages and gets hungrier,
+     * may die of infection, and then plans its births and its move in
+     * the same way as act.
+     * @param intent Receives the plan.
+     */
+    public void plan(Intent intent)
+    {
+        incrementAge();
+        incrementHunger();
+        if(isInfected() && infectionKills()) {
+            setDead();
+        }
+        else {
+            cureInfection();
+        }
+
+        if(isAlive()) {
+            int births = breed();
+            if(births > 0 && getField().freeAdjacentCount(getLocation()) > 0) {
+                planBirths(intent, births);
+            }
+            planMove(intent, FOOD);
+        }
+    }
+
+    /**
+     * Create a newborn otter.
+     * @param location Where the newborn is placed.
+     * @return The newborn.
+     */
+    protected Animal newborn(Location location)
+    {
+        return obtain(getField(), location);
+    }
+
+    /**
+     * Take the food value of what an otter has eaten.
+     * @param food The species code of what was eaten.
+     */
+    protected void eaten(int food)
+    {
+        foodLevel = FOOD_VALUES[food];
+    }
+
     /**
      * Increase the age. 
      * This could result in the otter's death.
@@ -128,34 +215,22 @@ public class Otter extends Animal
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
+        Location here = getLocation();
+        NeighbourCursor it = field.neighbours(here, field.speciesMask(here, FOOD));
         while(it.hasNext()) {
-            Location where = it.next();
-            Object object = field.getObjectAt(where);
-            if(object instanceof Shrimp) {
-                Shrimp shrimp = (Shrimp) object;
-                if(shrimp.isAlive()) { 
-                    shrimp.setDead();
-                    foodLevel = SHRIMP_FOOD_VALUE;
-                    return where;
-                }
-            }
-            else if(object instanceof Plankton) {
-                Plankton plankton = (Plankton) object;
-                if(plankton.isAlive()) {
-                    plankton.setDead();
-                    foodLevel = PLANKTON_FOOD_VALUE;
-                    return where;
-                }
-            }
-            else if(object instanceof Plastic) {
-               Plastic plastic = (Plastic) object;
-               if(plastic.isAlive()) {
+            Location where = it.nextLocation();
+            int code = field.getSpeciesCode(where);
+            if(code == Species.PLASTIC) {
+                Plastic plastic = (Plastic) field.getObjectAt(where, code);
+                if(plastic != null && field.release(plastic, where)) {
                     plastic.setDead();
                     setDead();
                 }
             }
+            else if(eat(field, (Actor) field.getObjectAt(where, code), where)) {
+                foodLevel = FOOD_VALUES[code];
+                return where;
+            }
         }
         return null;
     }
@@ -168,13 +243,21 @@ public class Otter extends Animal
     private void giveBirth(List<Actor> newOtters)
     {
         // New otters are born into adjacent locations.
-        // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
+        // The chance of breeding is drawn even when there is no room,
+        // so that the random numbers of a run do not depend on it.
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Otter young = new Otter(false, field, loc);
+        if(births == 0 || field.freeAdjacentCount(here) == 0) {
+            // No offspring, or no room for them.
+            return;
+        }
+        for(int b = 0; b < births; b++) {
+            Location loc = field.reserveFreeAdjacentLocation(here);
+            if(loc == null) {
+                break;
+            }
+            Otter young = obtain(field, loc);
             newOtters.add(young);
         }
     }
@@ -186,6 +269,7 @@ public class Otter extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY && 
         availablePartner()) {
@@ -210,19 +294,9 @@ public class Otter extends Animal
     private boolean availablePartner()
     {
         Field field = getField();
-        List<Location> adjacent =  field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location location = it.next();
-            Object animal = field.getObjectAt(location);
-            if(animal instanceof Otter){
-                Otter otter = (Otter) animal;
-                if(otter.isMale() != isMale()){
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        Location here = getLocation();
+        int partners = field.speciesMask(here, Species.bit(Species.OTTER));
+        int males = field.maleMask(here);
+        return (partners & (isMale() ? ~males : males)) != 0;
     }
 }
@@ -0,0 +1,274 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Let the actors of a field act on several threads at once. The field
+ * is split into horizontal strips, and each actor belongs to the strip
+ * holding its location at the start of the step. A step has two
+ * phases: first the even strips act, all at the same time, and then
+ * the odd ones. An actor only reaches the cells next to its own, so
+ * two strips acting together never touch the same cell, and the field
+ * chooses a strip height (see Field.getStripUnit) at which they never
+ * touch the same word of its own bookkeeping either.
+ *
+ * Within a strip the actors act in order, with a random number
+ * generator seeded from the step and the strip. A run therefore turns
+ * out the same whatever the number of threads, as long as the strips
+ * are the same.
+ *
+ * In lock-free mode (see setLockFree) all the strips act at once. The
+ * field is made concurrent, so actors on different threads that want
+ * the same cell race for it with compare-and-set, and the loser tries
+ * its next choice. Such a run depends on how the threads are scheduled.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class ParallelStepper
+{
+    // The number of strips to aim for per thread, so that a thread
+    // that finishes early can take work from the others.
+    private static final int STRIPS_PER_THREAD = 4;
+    // Spreads consecutive numbers across the range of seeds.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // The threads that step the strips.
+    private ForkJoinPool pool;
+    // The number of rows in each strip but the last, which takes
+    // any rows left over.
+    private int stripHeight;
+    // The actors of each strip for the current step.
+    private ActorList[] strips;
+    // The random number generator of each strip.
+    private RandomStream[] randoms;
+    // The task that steps each strip, used again every step.
+    private StripTask[] tasks;
+    // The seed from which the generators' seeds are made.
+    private long seed;
+    // The field whose actors are stepped.
+    private Field field;
+    // Whether all the strips act at once.
+    private boolean lockFree;
+
+    /**
+     * Create a stepper for a field.
+     * @param field The field whose actors are stepped.
+     * @param threads The number of threads to use.
+     */
+    public ParallelStepper(Field field, int threads)
+    {
+        this.field = field;
+        pool = new ForkJoinPool(threads);
+        seed = Randomizer.getRandom().nextLong();
+        int depth = field.getDepth();
+        int unit = field.getStripUnit();
+        int count = 1;
+        stripHeight = depth;
+        if(unit > 0) {
+            // Each strip must be at least two units high.
+            int wanted = Math.max(1, depth / (STRIPS_PER_THREAD * threads));
+            stripHeight = Math.max(2 * unit, (wanted + unit - 1) / unit * unit);
+            count = Math.max(1, depth / stripHeight);
+        }
+        strips = new ActorList[count];
+        randoms = new RandomStream[count];
+        tasks = new StripTask[count];
+        for(int s = 0; s < count; s++) {
+            strips[s] = new ActorList(null);
+            randoms[s] = new RandomStream(0);
+            tasks[s] = new StripTask(s);
+        }
+    }
+
+    /**
+     * Let every actor act once. Dead actors are removed and the newborns
+     * are added, as by ActorList.act.
+     * @param actors The actors to step.
+     * @param step The number of the step, used to seed the strips.
+     */
+    public void act(ActorList actors, int step)
+    {
+        for(ActorList strip : strips) {
+            strip.clear();
+        }
+        int awake = actors.size();
+        actors.wake();
+        if(lockFree) {
+            // An actor may have been eaten in its sleep by an actor
+            // on another thread.
+            for(int i = awake; i < actors.size(); i++) {
+                reconcile(actors.get(i));
+            }
+        }
+        for(int i = 0; i < actors.size(); i++) {
+            Actor actor = actors.get(i);
+            Location location = actor.getLocation();
+            // An actor killed since its last turn has no location. It
+            // will only be removed, so any strip will do.
+            int strip = location == null ? 0 : stripOf(location.getRow());
+            strips[strip].add(actor);
+        }
+        for(int s = 0; s < strips.length; s++) {
+            randoms[s].setSeed(mix(mix(seed + step) + s * GOLDEN_GAMMA));
+        }
+        if(lockFree) {
+            field.setConcurrent(true);
+            try {
+                runPhase(0, 1);
+            }
+            finally {
+                field.setConcurrent(false);
+            }
+            reconcile();
+        }
+        else {
+            runPhase(0, 2);
+            runPhase(1, 2);
+        }
+        actors.gather(strips);
+    }
+
+    /**
+     * Choose whether all the strips act at once, racing for cells, or
+     * in two phases as usual.
+     * @param lockFree Whether the strips act at once.
+     * @throws UnsupportedOperationException if the field cannot be
+     *         made concurrent.
+     */
+    public void setLockFree(boolean lockFree)
+    {
+        if(lockFree) {
+            // Fail now rather than in the middle of a step.
+            field.setConcurrent(true);
+            field.setConcurrent(false);
+        }
+        this.lockFree = lockFree;
+    }
+
+    /**
+     * @return The number of strips the field is split into.
+     */
+    public int getStripCount()
+    {
+        return strips.length;
+    }
+
+    /**
+     * Stop the threads. The stepper cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Step a set of strips at the same time, and wait for them all.
+     * @param first The first strip to step.
+     * @param stride The distance between the strips to step.
+     */
+    private void runPhase(int first, int stride)
+    {
+        for(int s = first; s < strips.length; s += stride) {
+            tasks[s].reinitialize();
+            pool.execute(tasks[s]);
+        }
+        for(int s = first; s < strips.length; s += stride) {
+            tasks[s].join();
+        }
+    }
+
+    /**
+     * Let the actors of one strip act, using the strip's generator.
+     * @param strip The strip.
+     */
+    private void actStrip(int strip)
+    {
+        Random previous = Randomizer.setThreadRandom(randoms[strip]);
+        try {
+            strips[strip].act();
+        }
+        finally {
+            Randomizer.setThreadRandom(previous);
+        }
+    }
+
+    /**
+     * Finish off the actors that were eaten by an actor on another
+     * thread after their own turn, and so do not know it yet. They
+     * are removed in the next step, as usual.
+     */
+    private void reconcile()
+    {
+        for(ActorList strip : strips) {
+            for(int i = 0; i < strip.size(); i++) {
+                reconcile(strip.get(i));
+            }
+        }
+    }
+
+    /**
+     * Finish off an actor if its cell no longer holds it.
+     * @param actor The actor.
+     */
+    private void reconcile(Actor actor)
+    {
+        Location location = actor.getLocation();
+        if(location != null && field.getObjectAt(location) != actor) {
+            actor.setDead();
+        }
+    }
+
+    /**
+     * Return the strip holding a row.
+     * @param row The row.
+     * @return The index of the strip.
+     */
+    private int stripOf(int row)
+    {
+        return Math.min(row / stripHeight, strips.length - 1);
+    }
+
+    /**
+     * The task that steps one strip. It is kept and run again every
+     * step, so that a step makes no new tasks.
+     */
+    private class StripTask extends RecursiveAction
+    {
+        // RecursiveAction is serializable, though a task never is.
+        private static final long serialVersionUID = 1L;
+
+        // The strip to step.
+        private int strip;
+
+        /**
+         * Create a task for a strip.
+         * @param strip The strip.
+         */
+        public StripTask(int strip)
+        {
+            this.strip = strip;
+        }
+
+        /**
+         * Step the strip.
+         */
+        protected void compute()
+        {
+            actStrip(strip);
+        }
+    }
+
+    /**
+     * Scramble the bits of a number, so that seeds made from nearby
+     * numbers start unrelated sequences.
+     * @param z The number.
+     * @return The scrambled number.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
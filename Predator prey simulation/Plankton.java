@@ -1,6 +1,5 @@
 import java.util.List;
 import java.util.Random;
-import java.util.Iterator;
 
 /**
  * A simple model of a plankton.
@@ -21,11 +20,13 @@ public class Plankton extends Animal
     private static final double BREEDING_PROBABILITY = 0.4;
     // The maximum number of births.
     private static final int MAX_LITTER_SIZE = 6;
+    // The food value of a plankton to whatever eats it.
+    private static final int PREY_VALUE = 3;
     // The food value of a single plant. In effect, this is the
     // number of steps a plankton can go before it has to eat again.
     private static final int PLANT_FOOD_VALUE = 6;
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    // The species set of plastic, which kills a plankton that eats it.
+    private static final int FOOD = Species.bit(Species.PLASTIC);
 
     // Individual characteristics (instance fields).
 
@@ -43,8 +44,9 @@ public class Plankton extends Animal
      */
     public Plankton(boolean randomAge, Field field, Location location)
     {
-        super(field, location, 3);
+        super(field, location, PREY_VALUE);
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(PLANT_FOOD_VALUE);
         }
@@ -54,6 +56,19 @@ public class Plankton extends Animal
         }
     }
 
+    /**
+     * Create an empty herd of plankton for HerdEngine. Packed plankton follow
+     * the same rules as Plankton objects.
+     * As with Plankton objects, their young are shrimp.
+     * @return The herd.
+     */
+    public static Herd herd()
+    {
+        return new Herd(Species.PLANKTON, Species.SHRIMP, BREEDING_AGE, MAX_AGE,
+                        BREEDING_PROBABILITY, MAX_LITTER_SIZE, FOOD, null,
+                        PLANT_FOOD_VALUE, false, PREY_VALUE);
+    }
+
     /**
      * This is what the plankton does most of the time - it swims 
      * around. Sometimes it will breed or die of old age.
@@ -75,11 +90,11 @@ public class Plankton extends Animal
             Location newLocation = findFood();
             if(newLocation == null && getField() != null) { 
                 // No food found - try to move to a free location.
-                newLocation = getField().freeAdjacentLocation(getLocation());
+                newLocation = getField().claimFreeAdjacentLocation(this, getLocation());
             }
 
             if(newLocation != null) {
-                setLocation(newLocation);
+                moveTo(newLocation);
             }
             else {
                 // Overcrowding.
@@ -88,6 +103,41 @@ public class Plankton extends Animal
         }
     }
 
+    /**
+     * Plan this plankton's synchronous step. It ages, may die of
+     * infection, and then plans its births and its move in the same
+     * way as act.
+     * @param intent Receives the plan.
+     */
+    public void plan(Intent intent)
+    {
+        incrementAge();
+        if(isInfected() && infectionKills()) {
+            setDead();
+        }
+        else {
+            cureInfection();
+        }
+
+        if(isAlive()) {
+            int births = breed();
+            if(births > 0 && getField().freeAdjacentCount(getLocation()) > 0) {
+                planBirths(intent, births);
+            }
+            planMove(intent, FOOD);
+        }
+    }
+
+    /**
+     * Create a newborn. As in giveBirth, plankton give birth to shrimp.
+     * @param location Where the newborn is placed.
+     * @return The newborn.
+     */
+    protected Animal newborn(Location location)
+    {
+        return Shrimp.obtain(getField(), location);
+    }
+
     /**
      * Increase the age.
      * This could result in the plankton's death.
@@ -120,13 +170,21 @@ public class Plankton extends Animal
     private void giveBirth(List<Actor> newPlankton)
     {
         // New plankton are born into adjacent locations.
-        // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
+        // The chance of breeding is drawn even when there is no room,
+        // so that the random numbers of a run do not depend on it.
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Shrimp young = new Shrimp(false, field, loc);
+        if(births == 0 || field.freeAdjacentCount(here) == 0) {
+            // No offspring, or no room for them.
+            return;
+        }
+        for(int b = 0; b < births; b++) {
+            Location loc = field.reserveFreeAdjacentLocation(here);
+            if(loc == null) {
+                break;
+            }
+            Shrimp young = Shrimp.obtain(field, loc);
             newPlankton.add(young);
         }
     }
@@ -138,6 +196,7 @@ public class Plankton extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY &&
         availablePartner()) {
@@ -163,17 +222,15 @@ public class Plankton extends Animal
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
+        Location here = getLocation();
+        NeighbourCursor it = field.neighbours(here, field.speciesMask(here, FOOD));
         while(it.hasNext()) {
-            Location where = it.next();
-            Object object = field.getObjectAt(where);
-            if(object instanceof Plastic) {
-                Plastic plastic = (Plastic) object;
-                if(plastic.isAlive()) {
-                    plastic.setDead();
-                    setDead();
-                }
+            // Plastic is the only species in the mask.
+            Location where = it.nextLocation();
+            Plastic plastic = (Plastic) field.getObjectAt(where, Species.PLASTIC);
+            if(plastic != null && field.release(plastic, where)) {
+                plastic.setDead();
+                setDead();
             }
         }
         return null;
@@ -187,19 +244,9 @@ public class Plankton extends Animal
     private boolean availablePartner()
     {
         Field field = getField();
-        List<Location> adjacent =  field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location location = it.next();
-            Object animal = field.getObjectAt(location);
-            if(animal instanceof Plankton){
-                Plankton plankton = (Plankton) animal;
-                if(plankton.isMale() != isMale()){
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        Location here = getLocation();
+        int partners = field.speciesMask(here, Species.bit(Species.PLANKTON));
+        int males = field.maleMask(here);
+        return (partners & (isMale() ? ~males : males)) != 0;
     }
 }
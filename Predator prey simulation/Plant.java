@@ -10,8 +10,6 @@ import java.util.List;
  */
 public class Plant implements Actor
 {
-    private static final Random rand = Randomizer.getRandom(); 
-
     private static double BREEDING_PROBABILITY = 0.12;
     private static final int MAX_LITTER_SIZE = 5;
     private static final int MAX_AGE = 40;
@@ -19,6 +17,8 @@ public class Plant implements Actor
     private Field field;
     private Location location;
     private int age;
+    // The number of steps until the plant next produces offspring.
+    private int untilBreeding;
 
     /**
      * Create a new plant. A plant may be created with age zero
@@ -34,11 +34,35 @@ public class Plant implements Actor
         this.field = field;
         setLocation(location);
         if(randomAge){
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
         }
         else{
             age = 0;
         }
+        untilBreeding = breedingInterval();
+    }
+
+    /**
+     * Return a newborn plant, as made with randomAge false, reusing a
+     * dead one from the ActorPool if there is one.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn.
+     */
+    public static Plant obtain(Field field, Location location)
+    {
+        Census.record(Census.BIRTHS, Species.PLANT);
+        Plant plant = (Plant) ActorPool.get().take(Species.PLANT);
+        if(plant == null) {
+            return new Plant(false, field, location);
+        }
+        plant.alive = true;
+        plant.field = field;
+        plant.setLocation(location);
+        plant.age = 0;
+        plant.untilBreeding = plant.breedingInterval();
+        return plant;
     }
 
     /**
@@ -50,7 +74,7 @@ public class Plant implements Actor
     public void act(List<Actor> newPlant)
     {
         incrementAge();
-        if(isAlive() && Weather.getCondition().equals("sunny")){
+        if(isAlive() && isSunny()){
             growPlant(newPlant);
         }
         else {
@@ -58,6 +82,50 @@ public class Plant implements Actor
         }
     }
 
+    /**
+     * Plan this plant's synchronous step. It ages, and if it is sunny
+     * plans its offspring into free cells next to it; otherwise it dies.
+     * @param intent Receives the plan.
+     */
+    public void plan(Intent intent)
+    {
+        incrementAge();
+        if(isAlive() && isSunny()) {
+            Field field = getField();
+            Location here = getLocation();
+            int births = breed();
+            if(births == 0 || field.freeAdjacentCount(here) == 0) {
+                // No offspring, or no room for them.
+                return;
+            }
+            NeighbourCursor it = field.neighbours(here, field.freeMask(here));
+            for(int b = 0; b < births && it.hasNext(); b++) {
+                intent.addBirth(it.next());
+            }
+        }
+        else {
+            setDead();
+        }
+    }
+
+    /**
+     * Carry out the plan made for a synchronous step: a new plant grows
+     * in each cell that was won.
+     * @param intent The plan.
+     * @param newPlants A list to receive the new plants.
+     */
+    public void commit(Intent intent, List<Actor> newPlants)
+    {
+        if(location == null) {
+            return;
+        }
+        for(int b = 0; b < intent.getBirthCount(); b++) {
+            if(intent.isBirthWon(b)) {
+                newPlants.add(obtain(field, field.getLocation(intent.getBirth(b))));
+            }
+        }
+    }
+
     /**
      * Check whether the human is alive or not.
      * @return true if the human is still alive.
@@ -75,27 +143,86 @@ public class Plant implements Actor
     public void growPlant(List<Actor> newPlants)
     {
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Plant young = new Plant(false, field, loc);
+        if(births == 0 || field.freeAdjacentCount(here) == 0) {
+            // No offspring, or no room for them.
+            return;
+        }
+        for(int b = 0; b < births; b++) {
+            Location loc = field.reserveFreeAdjacentLocation(here);
+            if(loc == null) {
+                break;
+            }
+            Plant young = obtain(field, loc);
             newPlants.add(young);
-        } 
+        }
     }
 
     /**
-     * Generate a number representing the number of births,
-     * if it can breed.
+     * Generate a number representing the number of births, if it is
+     * time for the plant to breed. A plant breeds with probability
+     * BREEDING_PROBABILITY each step; rather than draw for every
+     * step, it draws the number of steps until it next breeds, so that
+     * it can sleep until then. The chance of breeding in a step is the
+     * same as with a draw every step, but fewer random numbers are
+     * drawn, so a run from a given seed does not repeat one made with
+     * a draw every step.
      * @return The number of births (may be zero).
      */
     private int breed()
     {
-        int births = 0;
-        if(rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        untilBreeding--;
+        if(untilBreeding > 0) {
+            return 0;
         }
-        return births;
+        untilBreeding = breedingInterval();
+        return Randomizer.getRandom().nextInt(MAX_LITTER_SIZE) + 1;
+    }
+
+    /**
+     * Draw the number of steps until a plant next breeds, counting the
+     * step in which it does. With the same chance of breeding in every
+     * step, this number has a geometric distribution.
+     * @return The number of steps, at least one.
+     */
+    private int breedingInterval()
+    {
+        double u = 1.0 - Randomizer.getRandom().nextDouble();
+        return 1 + (int) (Math.log(u) / Math.log(1.0 - BREEDING_PROBABILITY));
+    }
+
+    /**
+     * Let the plant sleep until the next step in which it breeds or
+     * dies of old age. Until then it only ages, as long as the sun
+     * shines.
+     * @param most The most steps it may sleep.
+     * @return The number of steps it sleeps.
+     */
+    public int sleep(int most)
+    {
+        int steps = Math.min(most, Math.min(untilBreeding - 1, MAX_AGE - age));
+        return Math.max(steps, 0);
+    }
+
+    /**
+     * A sleeping plant dies as soon as the sun goes, so it is woken
+     * then.
+     * @return Change.SUN_GOES.
+     */
+    public int getAwaitedChange()
+    {
+        return Change.SUN_GOES;
+    }
+
+    /**
+     * Age the plant by the steps it slept through.
+     * @param steps The number of steps.
+     */
+    public void wake(int steps)
+    {
+        age += steps;
+        untilBreeding -= steps;
     }
 
     /**
@@ -116,9 +243,13 @@ public class Plant implements Actor
      */
     public void setDead()
     {
+        if(alive) {
+            Census.record(Census.DEATHS, Species.codeOf(this));
+        }
         alive = false;
         if(location != null) {
-            field.clear(location);
+            // The cell may already hold whatever ate the plant.
+            field.release(this, location);
             location = null;
             field = null;
         }
@@ -130,6 +261,9 @@ public class Plant implements Actor
      */
     public void setLocation(Location newLocation)
     {
+        if(Metrics.ENABLED) {
+            Metrics.count(Metrics.SET_LOCATION);
+        }
         if(location != null) {
             field.clear(location);
         }
@@ -137,6 +271,14 @@ public class Plant implements Actor
         field.place(this, newLocation);
     }
 
+    /**
+     * @return true if it is sunny in the plant's simulation.
+     */
+    private boolean isSunny()
+    {
+        return getField().getWeather().getCondition().equals("sunny");
+    }
+
     /**
      * Return the plant's field.
      * @return Field the plant's field.
@@ -36,6 +36,9 @@ public class Plastic implements Actor
      */
     public void setLocation(Location newLocation)
     {
+        if(Metrics.ENABLED) {
+            Metrics.count(Metrics.SET_LOCATION);
+        }
         if(location != null) {
             field.clear(location);
         }
@@ -57,15 +60,63 @@ public class Plastic implements Actor
 
     }
 
+    /**
+     * Plastic plans nothing.
+     * @param intent Receives the plan.
+     */
+    public void plan(Intent intent)
+    {
+    }
+
+    /**
+     * Plastic has nothing to commit.
+     * @param intent The plan.
+     * @param newPlastic A list to receive new actors.
+     */
+    public void commit(Intent intent, List<Actor> newPlastic)
+    {
+    }
+
+    /**
+     * Plastic has nothing to do, ever, so it sleeps for as long as it
+     * may.
+     * @param most The most steps it may sleep.
+     * @return most.
+     */
+    public int sleep(int most)
+    {
+        return most;
+    }
+
+    /**
+     * @return Change.NONE, as nothing wakes plastic early.
+     */
+    public int getAwaitedChange()
+    {
+        return Change.NONE;
+    }
+
+    /**
+     * Plastic does not change while it sleeps.
+     * @param steps The number of steps it slept through.
+     */
+    public void wake(int steps)
+    {
+    }
+
     /**
      * Indicate that the plastic is no longer alive.
      * It is removed from the field.
      */
     public void setDead()
     {
+        if(alive) {
+            Census.record(Census.DEATHS, Species.codeOf(this));
+        }
         alive = false;
         if(location != null) {
-            field.clear(location);
+            // Whatever ate the plastic may have emptied the cell already.
+            field.release(this, location);
             location = null;
             field = null;
         }
@@ -75,7 +126,7 @@ public class Plastic implements Actor
      * Return the plastic's location.
      * @return The plastic's location.
      */
-    private Location getLocation()
+    public Location getLocation()
     {
         return location;
     }
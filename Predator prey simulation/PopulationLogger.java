@@ -0,0 +1,39 @@
+import java.io.PrintStream;
+
+/**
+ * An observer that prints the population of the field, one line per
+ * update. It stands in for the view in a headless run.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class PopulationLogger implements SimulatorObserver
+{
+    // Where the lines are printed.
+    private PrintStream out;
+    // Counts what is in the field.
+    private FieldStats stats;
+
+    /**
+     * Create a logger.
+     * @param out Where to print the lines.
+     */
+    public PopulationLogger(PrintStream out)
+    {
+        this.out = out;
+        stats = new FieldStats();
+    }
+
+    /**
+     * Print the step, the hour and the population of the field.
+     * @param step The number of the step.
+     * @param field The field.
+     * @param hour The hour of the day.
+     */
+    public void update(int step, Field field, int hour)
+    {
+        stats.reset();
+        out.println("Step: " + step + " Time: " + hour + " hrs Population: "
+                    + stats.getPopulationDetails(field));
+    }
+}
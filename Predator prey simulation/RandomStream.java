@@ -0,0 +1,104 @@
+import java.util.Random;
+
+/**
+ * A fast random number generator for one thread, in the manner of
+ * java.util.SplittableRandom: its state is a plain long, advanced by a
+ * constant and scrambled, so drawing a number takes no atomic update.
+ * It extends Random so that it can be used wherever the simulation
+ * expects one, but unlike Random it must not be shared between threads.
+ *
+ * A stream can be split into a child stream whose numbers are
+ * unrelated to its own. A simulation keeps one root stream, made from
+ * a single seed, and the streams of its strips and actors are split or
+ * seeded from it, so a run can be repeated from that seed alone.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class RandomStream extends Random
+{
+    // Random is serializable, and so is a stream.
+    private static final long serialVersionUID = 1L;
+    // The step between successive states.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    // The unit of the doubles made from 53 random bits.
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    // The state of the stream. It is set by setSeed, which the
+    // constructor of Random calls, so it has no initializer here.
+    private long state;
+
+    /**
+     * Create a stream.
+     * @param seed The seed.
+     */
+    public RandomStream(long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * Start the stream again from a seed.
+     * @param seed The seed.
+     */
+    public void setSeed(long seed)
+    {
+        state = seed;
+    }
+
+    /**
+     * Make a stream whose numbers are unrelated to this one's. This
+     * stream moves on by one number.
+     * @return The new stream.
+     */
+    public RandomStream split()
+    {
+        return new RandomStream(nextLong());
+    }
+
+    /**
+     * @return The next 64 random bits.
+     */
+    public long nextLong()
+    {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * @return The next 32 random bits.
+     */
+    public int nextInt()
+    {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * @return A random number from 0 (inclusive) to 1 (exclusive).
+     */
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Return some random bits, for the other methods of Random.
+     * @param bits The number of bits, at most 32.
+     * @return The bits, in the low bits of the result.
+     */
+    protected int next(int bits)
+    {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    /**
+     * Scramble the bits of a number (the finalizer of SplitMix64).
+     * @param z The number.
+     * @return The scrambled number.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -5,6 +5,13 @@ import java.util.Random;
  * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
  * 'useShared' to false to get different random behaviour every time.
  * 
+ * A thread can be given its own generator for a while, for example by a
+ * parallel step, so that threads do not contend for the shared one. Code
+ * that may run on such a thread should call getRandom when it needs a
+ * number rather than keeping the generator it returns. A Simulator gives
+ * its thread its own RandomStream in this way, so the shared generator
+ * is only used outside a simulation.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
@@ -16,6 +23,8 @@ public class Randomizer
     private static final Random rand = new Random(SEED);
     // Determine whether a shared random generator is to be provided.
     private static final boolean useShared = true;
+    // Generators given to particular threads.
+    private static final ThreadLocal<Random> threadRandom = new ThreadLocal<>();
 
     /**
      * Constructor for objects of class Randomizer
@@ -30,6 +39,10 @@ public class Randomizer
      */
     public static Random getRandom()
     {
+        Random own = threadRandom.get();
+        if(own != null) {
+            return own;
+        }
         if(useShared) {
             return rand;
         }
@@ -38,6 +51,25 @@ public class Randomizer
         }
     }
     
+    /**
+     * Give the current thread its own generator, to be returned by
+     * getRandom until it is removed.
+     * @param random The generator, or null to go back to the usual one.
+     * @return The generator the thread had before, or null, so that
+     *         it can be put back.
+     */
+    public static Random setThreadRandom(Random random)
+    {
+        Random previous = threadRandom.get();
+        if(random == null) {
+            threadRandom.remove();
+        }
+        else {
+            threadRandom.set(random);
+        }
+        return previous;
+    }
+    
     /**
      * Reset the randomization.
      * This will have no effect if randomization is not through
@@ -0,0 +1,284 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * An observer that records a time series of the simulation: for each
+ * update, the step and, for each species, its population and the
+ * births, deaths, predation and infections counted by the Census since
+ * the last update. Added with an interval of 1 it records every step.
+ *
+ * The rows are kept in blocks of int columns, made in advance and
+ * reused. A full block is handed to a thread of the recorder's own,
+ * which writes it to a file, so recording never waits for the disk. If
+ * the thread falls behind, more blocks are made rather than waiting.
+ *
+ * The file is either CSV, with a header line naming the columns, or a
+ * binary columnar format: the int 0x50505352 ("PPSR"), the number of
+ * columns and each column's name (as by DataOutputStream.writeUTF);
+ * then for each block the number of rows, followed by each column's
+ * values in turn. Every number is a big-endian int.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class Recorder implements SimulatorObserver
+{
+    // The number of rows in a block, unless chosen otherwise.
+    private static final int DEFAULT_BLOCK_ROWS = 4096;
+    // Marks the start of a binary file.
+    private static final int MAGIC = 0x50505352;
+    // The metrics recorded for each species, in column order.
+    private static final String[] METRICS = {
+        "population", "births", "deaths", "predation", "infections"
+    };
+    // The Census event in each metric's column, after the population.
+    private static final int[] EVENTS = {
+        Census.BIRTHS, Census.DEATHS, Census.PREDATION, Census.INFECTIONS
+    };
+
+    // The number of species recorded, and of columns.
+    private int species, columns;
+    // The rows of the block being filled.
+    private Block block;
+    // The events counted since the last update.
+    private int[] events;
+    // Full blocks waiting to be written, then an empty one at the end.
+    private BlockingQueue<Block> full;
+    // Written blocks, ready to be filled again.
+    private ConcurrentLinkedQueue<Block> empty;
+    // The thread writing the blocks.
+    private Thread writer;
+    // Whether the file is binary rather than CSV.
+    private boolean binary;
+    // The file name.
+    private String fileName;
+    // The error that stopped the thread writing, if any.
+    private volatile IOException failure;
+
+    /**
+     * Create a recorder writing CSV, or the binary format if the file
+     * name ends with ".bin".
+     * @param fileName The file to write.
+     */
+    public Recorder(String fileName)
+    {
+        this(fileName, fileName.endsWith(".bin"), DEFAULT_BLOCK_ROWS);
+    }
+
+    /**
+     * Create a recorder and start its thread.
+     * @param fileName The file to write.
+     * @param binary Whether to write the binary format rather than CSV.
+     * @param blockRows The number of rows in a block.
+     */
+    public Recorder(String fileName, boolean binary, int blockRows)
+    {
+        if(blockRows <= 0) {
+            throw new IllegalArgumentException("Block size not positive: " + blockRows);
+        }
+        this.fileName = fileName;
+        this.binary = binary;
+        species = Species.count() - 1;
+        columns = 1 + species * METRICS.length;
+        events = new int[Census.EVENTS * Species.MAX_SPECIES];
+        // Events from before the recording started are not recorded.
+        Census.drain(events);
+        full = new LinkedBlockingQueue<>();
+        empty = new ConcurrentLinkedQueue<>();
+        empty.add(new Block(columns, blockRows));
+        block = new Block(columns, blockRows);
+        writer = new Thread(this::run, "recorder");
+        // Rows not yet written are lost unless the recorder is closed.
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Record a row for the state after a step. This only copies
+     * numbers into the current block.
+     * @param step The number of the step.
+     * @param field The field.
+     * @param hour The hour of the day.
+     */
+    public void update(int step, Field field, int hour)
+    {
+        Arrays.fill(events, 0);
+        Census.drain(events);
+        int row = block.rows;
+        int[][] values = block.values;
+        values[0][row] = step;
+        int column = 1;
+        for(int code = 1; code <= species; code++) {
+            values[column++][row] = field.getPopulation(code);
+            for(int event : EVENTS) {
+                values[column++][row] = events[event * Species.MAX_SPECIES + code];
+            }
+        }
+        block.rows = row + 1;
+        if(block.rows == values[0].length) {
+            if(failure != null) {
+                // Nothing more can be written, so the rows are let go.
+                block.rows = 0;
+                return;
+            }
+            full.add(block);
+            Block next = empty.poll();
+            block = next != null ? next : new Block(columns, values[0].length);
+        }
+    }
+
+    /**
+     * Write the rows still in hand, wait for the thread to finish
+     * writing and close the file.
+     * @throws IOException If the file could not be written.
+     */
+    public void close() throws IOException
+    {
+        if(block.rows > 0) {
+            full.add(block);
+        }
+        // An empty block tells the thread to stop.
+        full.add(new Block(columns, 0));
+        try {
+            writer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Write the blocks as they come, until an empty one comes.
+     */
+    private void run()
+    {
+        try {
+            if(binary) {
+                try(DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16))) {
+                    writeBinary(out);
+                }
+            }
+            else {
+                try(Writer out = new BufferedWriter(new FileWriter(fileName), 1 << 16)) {
+                    writeCsv(out);
+                }
+            }
+        }
+        catch(IOException e) {
+            failure = e;
+        }
+        catch(InterruptedException e) {
+            failure = new IOException("Interrupted while recording", e);
+        }
+    }
+
+    /**
+     * Write the binary format.
+     * @param out The file.
+     * @throws IOException If the file could not be written.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    private void writeBinary(DataOutputStream out) throws IOException, InterruptedException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(columns);
+        for(int column = 0; column < columns; column++) {
+            out.writeUTF(columnName(column));
+        }
+        Block next;
+        while((next = full.take()).rows > 0) {
+            out.writeInt(next.rows);
+            for(int[] column : next.values) {
+                for(int row = 0; row < next.rows; row++) {
+                    out.writeInt(column[row]);
+                }
+            }
+            recycle(next);
+        }
+    }
+
+    /**
+     * Write CSV.
+     * @param out The file.
+     * @throws IOException If the file could not be written.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    private void writeCsv(Writer out) throws IOException, InterruptedException
+    {
+        StringBuilder line = new StringBuilder();
+        for(int column = 0; column < columns; column++) {
+            line.append(column == 0 ? "" : ",").append(columnName(column));
+        }
+        out.write(line.append('\n').toString());
+        Block next;
+        while((next = full.take()).rows > 0) {
+            for(int row = 0; row < next.rows; row++) {
+                line.setLength(0);
+                for(int column = 0; column < columns; column++) {
+                    line.append(column == 0 ? "" : ",").append(next.values[column][row]);
+                }
+                out.write(line.append('\n').toString());
+            }
+            recycle(next);
+        }
+    }
+
+    /**
+     * Hand a written block back to be filled again.
+     * @param written The block.
+     */
+    private void recycle(Block written)
+    {
+        written.rows = 0;
+        empty.add(written);
+    }
+
+    /**
+     * Return the name of a column, such as "step" or "Shark.births".
+     * @param column The column.
+     * @return The name.
+     */
+    private String columnName(int column)
+    {
+        if(column == 0) {
+            return "step";
+        }
+        int code = 1 + (column - 1) / METRICS.length;
+        return Species.classOf(code).getName() + "." + METRICS[(column - 1) % METRICS.length];
+    }
+
+    /**
+     * Some rows of the time series, by column.
+     */
+    private static class Block
+    {
+        // The values, by column and then row.
+        private int[][] values;
+        // The number of rows filled.
+        private int rows;
+
+        /**
+         * Create an empty block.
+         * @param columns The number of columns.
+         * @param capacity The number of rows it can hold.
+         */
+        private Block(int columns, int capacity)
+        {
+            values = new int[columns][capacity];
+            rows = 0;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An observer that shows the state of a simulation to a slower
+ * observer, such as a view, on a thread of its own. After each step it
+ * only takes a snapshot of the field and hands it to that thread, so
+ * the next step is computed while the last one is drawn.
+ *
+ * There is room for one snapshot waiting to be shown. If the thread is
+ * still busy when the next one comes, the waiting one is dropped in
+ * its favour, so a slow observer loses frames rather than slowing the
+ * simulation down. The newest snapshot is always shown in the end.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class RenderPipeline implements SimulatorObserver
+{
+    // The observer the snapshots are shown to.
+    private SnapshotObserver target;
+    // The thread showing the snapshots.
+    private Thread renderer;
+    // The snapshot waiting to be shown, or null.
+    private AtomicReference<FieldSnapshot> pending;
+    // A snapshot that has been shown or dropped, whose array the next
+    // snapshot can copy into, or null.
+    private AtomicReference<FieldSnapshot> spare;
+    // The number of snapshots shown and dropped.
+    private AtomicInteger shown, dropped;
+    // Whether the pipeline has been closed.
+    private volatile boolean closed;
+
+    /**
+     * Create a pipeline and start its thread.
+     * @param target The observer to show the snapshots to.
+     */
+    public RenderPipeline(SnapshotObserver target)
+    {
+        this.target = target;
+        pending = new AtomicReference<>();
+        spare = new AtomicReference<>();
+        shown = new AtomicInteger();
+        dropped = new AtomicInteger();
+        renderer = new Thread(this::run, "renderer");
+        // It must not keep the program alive once the simulation ends.
+        renderer.setDaemon(true);
+        renderer.start();
+    }
+
+    /**
+     * Take a snapshot of the field and pass it to the thread, dropping
+     * the one still waiting, if any.
+     * @param step The number of the step.
+     * @param field The field.
+     * @param hour The hour of the day.
+     */
+    public void update(int step, Field field, int hour)
+    {
+        FieldSnapshot reused = spare.getAndSet(null);
+        byte[] buffer = reused == null ? null : reused.release();
+        FieldSnapshot skipped = pending.getAndSet(new FieldSnapshot(step, hour, field, buffer));
+        if(skipped != null) {
+            dropped.incrementAndGet();
+            spare.set(skipped);
+        }
+        LockSupport.unpark(renderer);
+    }
+
+    /**
+     * @return The number of snapshots shown so far.
+     */
+    public int getShownCount()
+    {
+        return shown.get();
+    }
+
+    /**
+     * @return The number of snapshots dropped so far.
+     */
+    public int getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Stop the thread once it has shown the snapshot it is busy with.
+     */
+    public void close()
+    {
+        closed = true;
+        LockSupport.unpark(renderer);
+    }
+
+    /**
+     * Show the snapshots as they come, until the pipeline is closed.
+     */
+    private void run()
+    {
+        while(!closed) {
+            FieldSnapshot snapshot = pending.getAndSet(null);
+            if(snapshot == null) {
+                LockSupport.park(this);
+            }
+            else {
+                target.show(snapshot);
+                shown.incrementAndGet();
+                spare.set(snapshot);
+            }
+        }
+    }
+}
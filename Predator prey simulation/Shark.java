@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -25,14 +24,24 @@ public class Shark extends Animal
     private static final double BREEDING_PROBABILITY = 0.24;
     // The maximum number of births.
     private static final int MAX_LITTER_SIZE = 7;
+    // The food value of a shark to whatever eats it.
+    private static final int PREY_VALUE = 15;
     // The food value of a single shrimp. In effect, this is the
     // number of steps a shark can go before it has to eat again.
     private static final int SHRIMP_FOOD_VALUE = 12;
     // The food value of a single plankton. In effect, this is the
     // number of steps a shark can go before it has to eat again.
     private static final int PLANKTON_FOOD_VALUE = 18;
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    // The species set of what a shark will eat, including plastic.
+    private static final int FOOD = Species.bit(Species.SHRIMP) | Species.bit(Species.PLANKTON)
+        | Species.bit(Species.PLASTIC);
+    // The food value of each species a shark eats, indexed by species code.
+    private static final int[] FOOD_VALUES = new int[Species.MAX_SPECIES];
+
+    static {
+        FOOD_VALUES[Species.SHRIMP] = SHRIMP_FOOD_VALUE;
+        FOOD_VALUES[Species.PLANKTON] = PLANKTON_FOOD_VALUE;
+    }
 
     // Individual characteristics (instance fields). 
     // The shark's age.
@@ -51,8 +60,9 @@ public class Shark extends Animal
      */
     public Shark(boolean randomAge, Field field, Location location)
     {
-        super(field, location, 15);
+        super(field, location, PREY_VALUE);
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(SHRIMP_FOOD_VALUE + PLANKTON_FOOD_VALUE);
         }
@@ -62,6 +72,38 @@ public class Shark extends Animal
         }
     }
 
+    /**
+     * Return a newborn shark, as made with randomAge false, reusing a
+     * dead one from the ActorPool if there is one.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn.
+     */
+    public static Shark obtain(Field field, Location location)
+    {
+        Census.record(Census.BIRTHS, Species.SHARK);
+        Shark shark = (Shark) ActorPool.get().take(Species.SHARK);
+        if(shark == null) {
+            return new Shark(false, field, location);
+        }
+        shark.rebirth(field, location);
+        shark.age = 0;
+        shark.foodLevel = SHRIMP_FOOD_VALUE + PLANKTON_FOOD_VALUE;
+        return shark;
+    }
+
+    /**
+     * Create an empty herd of sharks for HerdEngine. Packed sharks follow
+     * the same rules as Shark objects.
+     * @return The herd.
+     */
+    public static Herd herd()
+    {
+        return new Herd(Species.SHARK, Species.SHARK, BREEDING_AGE, MAX_AGE,
+                        BREEDING_PROBABILITY, MAX_LITTER_SIZE, FOOD, FOOD_VALUES,
+                        SHRIMP_FOOD_VALUE + PLANKTON_FOOD_VALUE, true, PREY_VALUE);
+    }
+
     /**
      * This is what the shark does most of the time: it hunts for
      * shrimp and plankton. In the process, it might breed, die of hunger,
@@ -88,11 +130,11 @@ public class Shark extends Animal
             Location newLocation = findFood();
             if(newLocation == null && getField() != null) { 
                 // No food found - try to move to a free location.
-                newLocation = getField().freeAdjacentLocation(getLocation());
+                newLocation = getField().claimFreeAdjacentLocation(this, getLocation());
             }
             // See if it was possible to move.
             if(newLocation != null) {
-                setLocation(newLocation);
+                moveTo(newLocation);
             }
             else {
                 // Overcrowding.
@@ -101,6 +143,51 @@ public class Shark extends Animal
         }
     }
 
+    /**
+     * Plan this shark's synchronous step. It ages and gets hungrier,
+     * may die of infection, and then plans its births and its move in
+     * the same way as act.
+     * @param intent Receives the plan.
+     */
+    public void plan(Intent intent)
+    {
+        incrementAge();
+        incrementHunger();
+        if(isInfected() && infectionKills()) {
+            setDead();
+        }
+        else {
+            cureInfection();
+        }
+
+        if(isAlive()) {
+            int births = breed();
+            if(births > 0 && getField().freeAdjacentCount(getLocation()) > 0) {
+                planBirths(intent, births);
+            }
+            planMove(intent, FOOD);
+        }
+    }
+
+    /**
+     * Create a newborn shark.
+     * @param location Where the newborn is placed.
+     * @return The newborn.
+     */
+    protected Animal newborn(Location location)
+    {
+        return obtain(getField(), location);
+    }
+
+    /**
+     * Take the food value of what a shark has eaten.
+     * @param food The species code of what was eaten.
+     */
+    protected void eaten(int food)
+    {
+        foodLevel = FOOD_VALUES[food];
+    }
+
     /**
      * Increase the age. 
      * This could result in the shark's death.
@@ -133,34 +220,22 @@ public class Shark extends Animal
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
+        Location here = getLocation();
+        NeighbourCursor it = field.neighbours(here, field.speciesMask(here, FOOD));
         while(it.hasNext()) {
-            Location where = it.next();
-            Object food = field.getObjectAt(where);
-            if(food instanceof Shrimp) {
-                Shrimp shrimp = (Shrimp) food;
-                if(shrimp.isAlive()) { 
-                    shrimp.setDead();
-                    foodLevel = SHRIMP_FOOD_VALUE;
-                    return where;
-                }
-            }
-            else if(food instanceof Plankton) {
-                Plankton plankton = (Plankton) food;
-                if(plankton.isAlive()) {
-                    plankton.setDead();
-                    foodLevel = PLANKTON_FOOD_VALUE;
-                    return where;
-                }
-            }
-            else if(food instanceof Plastic) {
-                Plastic plastic = (Plastic) food;
-                if(plastic.isAlive()) {
+            Location where = it.nextLocation();
+            int code = field.getSpeciesCode(where);
+            if(code == Species.PLASTIC) {
+                Plastic plastic = (Plastic) field.getObjectAt(where, code);
+                if(plastic != null && field.release(plastic, where)) {
                     plastic.setDead();
                     setDead();
                 }
             }
+            else if(eat(field, (Actor) field.getObjectAt(where, code), where)) {
+                foodLevel = FOOD_VALUES[code];
+                return where;
+            }
         }
         return null;
     }
@@ -173,13 +248,21 @@ public class Shark extends Animal
     private void giveBirth(List<Actor> newSharks)
     {
         // New sharks are born into adjacent locations.
-        // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
+        // The chance of breeding is drawn even when there is no room,
+        // so that the random numbers of a run do not depend on it.
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Shark young = new Shark(false, field, loc);
+        if(births == 0 || field.freeAdjacentCount(here) == 0) {
+            // No offspring, or no room for them.
+            return;
+        }
+        for(int b = 0; b < births; b++) {
+            Location loc = field.reserveFreeAdjacentLocation(here);
+            if(loc == null) {
+                break;
+            }
+            Shark young = obtain(field, loc);
             newSharks.add(young);
         }
     }
@@ -191,6 +274,7 @@ public class Shark extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
 
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY && 
@@ -218,18 +302,9 @@ public class Shark extends Animal
     private boolean availablePartner()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location location = it.next();
-            Object animal = field.getObjectAt(location);
-            if(animal instanceof Shark){
-                Shark shark = (Shark) animal;
-                if(shark.isMale() != isMale()){
-                    return true;
-                }
-            }
-        }
-        return false;
+        Location here = getLocation();
+        int partners = field.speciesMask(here, Species.bit(Species.SHARK));
+        int males = field.maleMask(here);
+        return (partners & (isMale() ? ~males : males)) != 0;
     }
 }
\ No newline at end of file
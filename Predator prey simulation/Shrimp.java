@@ -1,6 +1,5 @@
 import java.util.List;
 import java.util.Random;
-import java.util.Iterator;
 
 /**
  * A simple model of a shrimp.
@@ -24,11 +23,13 @@ public class Shrimp extends Animal
     private static final double BREEDING_PROBABILITY = 0.26;
     // The maximum number of births.
     private static final int MAX_LITTER_SIZE = 6;
+    // The food value of a shrimp to whatever eats it.
+    private static final int PREY_VALUE = 6;
     // The food value of a single plant. In effect, this is the
     // number of steps a shrimp can go before it has to eat again.
     private static final int PLANT_FOOD_VALUE = 4;
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    // The species set of what a shrimp will eat, including plastic.
+    private static final int FOOD = Species.bit(Species.PLANT) | Species.bit(Species.PLASTIC);
 
     // Individual characteristics (instance fields).
 
@@ -46,8 +47,9 @@ public class Shrimp extends Animal
      */
     public Shrimp(boolean randomAge, Field field, Location location)
     {
-        super(field, location, 6);
+        super(field, location, PREY_VALUE);
         if(randomAge) {
+            Random rand = Randomizer.getRandom();
             age = rand.nextInt(MAX_AGE);
             foodLevel = rand.nextInt(PLANT_FOOD_VALUE);
         }
@@ -57,6 +59,38 @@ public class Shrimp extends Animal
         }
     }
 
+    /**
+     * Return a newborn shrimp, as made with randomAge false, reusing a
+     * dead one from the ActorPool if there is one.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn.
+     */
+    public static Shrimp obtain(Field field, Location location)
+    {
+        Census.record(Census.BIRTHS, Species.SHRIMP);
+        Shrimp shrimp = (Shrimp) ActorPool.get().take(Species.SHRIMP);
+        if(shrimp == null) {
+            return new Shrimp(false, field, location);
+        }
+        shrimp.rebirth(field, location);
+        shrimp.age = 0;
+        shrimp.foodLevel = PLANT_FOOD_VALUE;
+        return shrimp;
+    }
+
+    /**
+     * Create an empty herd of shrimp for HerdEngine. Packed shrimp follow
+     * the same rules as Shrimp objects.
+     * @return The herd.
+     */
+    public static Herd herd()
+    {
+        return new Herd(Species.SHRIMP, Species.SHRIMP, BREEDING_AGE, MAX_AGE,
+                        BREEDING_PROBABILITY, MAX_LITTER_SIZE, FOOD, null,
+                        PLANT_FOOD_VALUE, false, PREY_VALUE);
+    }
+
     /**
      * This is what the shrimp does most of the time - it swims 
      * around and eats plants. Sometimes it will breed or die of old age.
@@ -78,11 +112,11 @@ public class Shrimp extends Animal
             Location newLocation = findFood();
             if(newLocation == null && getField() != null) { 
                 // No food found - try to move to a free location.
-                newLocation = getField().freeAdjacentLocation(getLocation());
+                newLocation = getField().claimFreeAdjacentLocation(this, getLocation());
             }
 
             if(newLocation != null) {
-                setLocation(newLocation);
+                moveTo(newLocation);
             }
             else {
                 // Overcrowding.
@@ -91,6 +125,41 @@ public class Shrimp extends Animal
         }
     }
 
+    /**
+     * Plan this shrimp's synchronous step. It ages, may die of
+     * infection, and then plans its births and its move in the same
+     * way as act.
+     * @param intent Receives the plan.
+     */
+    public void plan(Intent intent)
+    {
+        incrementAge();
+        if(isInfected() && infectionKills()) {
+            setDead();
+        }
+        else {
+            cureInfection();
+        }
+
+        if(isAlive()) {
+            int births = breed();
+            if(births > 0 && getField().freeAdjacentCount(getLocation()) > 0) {
+                planBirths(intent, births);
+            }
+            planMove(intent, FOOD);
+        }
+    }
+
+    /**
+     * Create a newborn shrimp.
+     * @param location Where the newborn is placed.
+     * @return The newborn.
+     */
+    protected Animal newborn(Location location)
+    {
+        return obtain(getField(), location);
+    }
+
     /**
      * Increase the age.
      * This could result in the shrimp's death.
@@ -124,25 +193,21 @@ public class Shrimp extends Animal
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
+        Location here = getLocation();
+        NeighbourCursor it = field.neighbours(here, field.speciesMask(here, FOOD));
         while(it.hasNext()) {
-            Location where = it.next();
-            Object object = field.getObjectAt(where);
-            if(object instanceof Plant) {
-                Plant plant = (Plant) object;
-                if(plant.isAlive()) { 
-                    plant.setDead();
-                    return where;
-                }
-            }
-            else if(object instanceof Plastic) {
-                Plastic plastic = (Plastic) object;
-                if(plastic.isAlive()) {
+            Location where = it.nextLocation();
+            int code = field.getSpeciesCode(where);
+            if(code == Species.PLASTIC) {
+                Plastic plastic = (Plastic) field.getObjectAt(where, code);
+                if(plastic != null && field.release(plastic, where)) {
                     plastic.setDead();
                     setDead();
                 }
             }
+            else if(eat(field, (Actor) field.getObjectAt(where, code), where)) {
+                return where;
+            }
         }
         return null;
     }
@@ -155,13 +220,21 @@ public class Shrimp extends Animal
     private void giveBirth(List<Actor> newShrimps)
     {
         // New shrimps are born into adjacent locations.
-        // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        Location here = getLocation();
+        // The chance of breeding is drawn even when there is no room,
+        // so that the random numbers of a run do not depend on it.
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Shrimp young = new Shrimp(false, field, loc);
+        if(births == 0 || field.freeAdjacentCount(here) == 0) {
+            // No offspring, or no room for them.
+            return;
+        }
+        for(int b = 0; b < births; b++) {
+            Location loc = field.reserveFreeAdjacentLocation(here);
+            if(loc == null) {
+                break;
+            }
+            Shrimp young = obtain(field, loc);
             newShrimps.add(young);
         }
     }
@@ -173,6 +246,7 @@ public class Shrimp extends Animal
      */
     private int breed()
     {
+        Random rand = Randomizer.getRandom();
         int births = 0;
         if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY &&
         availablePartner()) {
@@ -198,19 +272,9 @@ public class Shrimp extends Animal
     private boolean availablePartner()
     {
         Field field = getField();
-        List<Location> adjacent =  field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()){
-            Location location = it.next();
-            Object animal = field.getObjectAt(location);
-            if(animal instanceof Shrimp){
-                Shrimp shrimp = (Shrimp) animal;
-                if(shrimp.isMale() != isMale()){
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        Location here = getLocation();
+        int partners = field.speciesMask(here, Species.bit(Species.SHRIMP));
+        int males = field.maleMask(here);
+        return (partners & (isMale() ? ~males : males)) != 0;
     }
 }
@@ -1,7 +1,8 @@
-import java.util.Random;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import java.awt.Color;
 
 /**
@@ -35,23 +36,50 @@ public class Simulator
     private static final double PLANT_CREATION_PROBABILITY = 0.12;
     // The probability that plastic will be created in any given grid position.
     private static final double PLASTIC_CREATION_PROBABILITY = 0.14;
+    // The seed a simulation starts with unless another is chosen.
+    private static final long DEFAULT_SEED = 1111;
 
     // List of actors in the field.
-    private List<Actor> actors;
+    private ActorList actors;
+    // Steps the actors on several threads, or null to use just one.
+    private ParallelStepper stepper;
+    // Steps the actors synchronously, or null to let them act in turn.
+    private SynchronousEngine engine;
+    // The number of threads the actors act on.
+    private int threads = 1;
+    // Whether the actors take their steps synchronously.
+    private boolean synchronous;
+    // Whether the strips of the field act all at once.
+    private boolean lockFree;
+    // Steps the animals kept in herds, or null if they are objects.
+    private HerdEngine herds;
+    // The seed from which every random number of a run is made.
+    private long seed = DEFAULT_SEED;
+    // The probability that a member of each species is created in any
+    // given grid position, indexed by species code.
+    private double[] creationProbabilities;
+    // The simulation's own generator, which its thread uses while
+    // the simulation is populated or stepped. Remade on reset.
+    private RandomStream random;
 
     private Time time;
     
     private Weather weather;
+    // The changes of the time and the weather that wake sleeping actors.
+    private Change changes;
     
     // The current state of the field.
     private Field field;
-    private Field plantField;
     // The current step of the simulation.
     private int step;
     // The current hour in the simulation.
     private int hour;
-     // A graphical view of the simulation.
+     // A graphical view of the simulation, or null if headless.
     private SimulatorView view;
+    // The observers, each with the number of steps between its
+    // updates, 0 for updates only on demand.
+    private List<SimulatorObserver> observers;
+    private List<Integer> intervals;
 
     
     /**
@@ -69,37 +97,254 @@ public class Simulator
      */
     public Simulator(int depth, int width)
     {
-        if(width <= 0 || depth <= 0) {
-            System.out.println("The dimensions must be greater than zero.");
-            System.out.println("Using default values.");
-            depth = DEFAULT_DEPTH;
-            width = DEFAULT_WIDTH;
-        }
+        this(depth, width, false);
+    }
+
+    /**
+     * Create a simulation field with the given size, and with or
+     * without a graphical view. A headless simulation shows nothing
+     * until observers are added.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless If true, no view is made.
+     */
+    public Simulator(int depth, int width, boolean headless)
+    {
+        this(makeField(depth, width), headless);
+    }
 
-        actors = new ArrayList<>();
+    /**
+     * Create a simulation on the given field, which may be any kind of
+     * Field, such as a TiledField for a very large, mostly empty ocean.
+     * An empty field is populated. A field that is not empty, such as
+     * one handed on by an earlier simulation, is carried on from where
+     * it is (see carryOn); reset populates it afresh.
+     * @param field The field to simulate.
+     * @param headless If true, no view is made.
+     */
+    public Simulator(Field field, boolean headless)
+    {
+        this(field, headless, DEFAULT_SEED);
+    }
+
+    /**
+     * Create a simulation on the given field that starts from the given
+     * seed, without first populating the field from the default seed
+     * as creating it and then calling setSeed would.
+     * @param field The field to simulate.
+     * @param headless If true, no view is made.
+     * @param seed The seed (see setSeed).
+     */
+    public Simulator(Field field, boolean headless, long seed)
+    {
+        this.seed = seed;
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        changes = new Change();
+        actors = new ActorList(changes);
+        creationProbabilities = new double[Species.MAX_SPECIES];
+        creationProbabilities[Species.SHARK] = SHARK_CREATION_PROBABILITY;
+        creationProbabilities[Species.SHRIMP] = SHRIMP_CREATION_PROBABILITY;
+        creationProbabilities[Species.OTTER] = SEAOTTER_CREATION_PROBABILITY;
+        creationProbabilities[Species.PLANKTON] = PLANKTON_CREATION_PROBABILITY;
+        creationProbabilities[Species.HUMAN] = HUMAN_CREATION_PROBABILITY;
+        creationProbabilities[Species.PLANT] = PLANT_CREATION_PROBABILITY;
+        creationProbabilities[Species.PLASTIC] = PLASTIC_CREATION_PROBABILITY;
         
         
-        field = new Field(depth, width);
-        plantField = new Field(depth, width);
+        this.field = field;
         
-        time = new Time();
-        weather = new Weather();
+        time = new Time(changes);
         
         
-        // Create a view of the state of each location in the field.
-        view = new SimulatorView(depth, width);
-        view.setColor(Shrimp.class, Color.ORANGE);
-        view.setColor(Shark.class, Color.BLACK);
-        view.setColor(Human.class, Color.MAGENTA);
-        view.setColor(Otter.class, Color.CYAN);
-        view.setColor(Plankton.class, Color.RED);
-        view.setColor(Plant.class, Color.GREEN);
-        view.setColor(Plastic.class, Color.BLUE);
+        observers = new ArrayList<>();
+        intervals = new ArrayList<>();
+        if(!headless) {
+            // Create a view of the state of each location in the field.
+            view = new SimulatorView(depth, width);
+            view.setColor(Shrimp.class, Color.ORANGE);
+            view.setColor(Shark.class, Color.BLACK);
+            view.setColor(Human.class, Color.MAGENTA);
+            view.setColor(Otter.class, Color.CYAN);
+            view.setColor(Plankton.class, Color.RED);
+            view.setColor(Plant.class, Color.GREEN);
+            view.setColor(Plastic.class, Color.BLUE);
+            // The view draws on a thread of its own, so that the next
+            // step is computed meanwhile.
+            addObserver(new RenderPipeline(view), 1);
+        }
         
         
 
+        Metrics.register();
+
         // Setup a valid starting point.
-        reset();
+        start(field.getSpeciesPresent() != 0);
+    }
+
+    /**
+     * Make a dense field of the given size, or of the default size if
+     * the given one is not valid.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @return The field.
+     */
+    private static Field makeField(int depth, int width)
+    {
+        if(width <= 0 || depth <= 0) {
+            System.out.println("The dimensions must be greater than zero.");
+            System.out.println("Using default values.");
+            depth = DEFAULT_DEPTH;
+            width = DEFAULT_WIDTH;
+        }
+        return new Field(depth, width);
+    }
+
+    /**
+     * Run a simulation from the command line. The arguments, all
+     * optional, are the number of steps (default 4000), then any of:
+     *   -headless        run without a view;
+     *   -size DEPTH WIDTH  the size of the field;
+     *   -tiled           keep the field in tiles (see TiledField);
+     *   -offheap         keep the field outside the heap (see
+     *                    OffHeapField);
+     *   -map FILE        keep the field outside the heap, in a file;
+     *                    a file left by an earlier run is carried on
+     *                    from rather than populated from -seed;
+     *   -threads N       the number of threads (see setThreads);
+     *   -every N         print the population every N steps (headless
+     *                    only; 0 prints it only at the end);
+     *   -seed N          the seed (see setSeed);
+     *   -record FILE     record every step to a file (see Recorder).
+     * @param args The arguments.
+     * @throws IOException If the record could not be written, or the
+     *         file to map could not be opened.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int steps = 4000;
+        boolean headless = false;
+        int depth = DEFAULT_DEPTH;
+        int width = DEFAULT_WIDTH;
+        int threads = 1;
+        int every = 100;
+        long seed = DEFAULT_SEED;
+        boolean tiled = false;
+        boolean offHeap = false;
+        String map = null;
+        String record = null;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-headless":
+                    headless = true;
+                    break;
+                case "-size":
+                    depth = Integer.parseInt(args[++i]);
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                case "-tiled":
+                    tiled = true;
+                    break;
+                case "-offheap":
+                    offHeap = true;
+                    break;
+                case "-map":
+                    map = args[++i];
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-every":
+                    every = Integer.parseInt(args[++i]);
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-record":
+                    record = args[++i];
+                    break;
+                default:
+                    steps = Integer.parseInt(args[i]);
+            }
+        }
+        Field field = null;
+        if(map != null) {
+            field = new OffHeapField(new OffHeapGrid(Paths.get(map), depth, width));
+        }
+        else if(offHeap) {
+            field = new OffHeapField(depth, width);
+        }
+        else if(tiled) {
+            field = new TiledField(depth, width);
+        }
+        if(field == null) {
+            field = makeField(depth, width);
+        }
+        // The field is populated once, from the seed, unless it is
+        // carried on from an earlier run.
+        Simulator simulator = new Simulator(field, headless, seed);
+        simulator.setThreads(threads);
+        if(headless) {
+            simulator.addObserver(new PopulationLogger(System.out), every);
+        }
+        Recorder recorder = null;
+        if(record != null) {
+            recorder = new Recorder(record);
+            simulator.addObserver(recorder, 1);
+        }
+        simulator.simulate(steps);
+        if(headless && (every == 0 || simulator.getStep() % every != 0)) {
+            // Show where the run ended.
+            simulator.notifyObservers();
+        }
+        simulator.setThreads(1);
+        if(recorder != null) {
+            recorder.close();
+        }
+        if(Metrics.ENABLED) {
+            System.out.print(Metrics.getReport());
+        }
+    }
+
+    /**
+     * Add an observer, to be shown the state of the simulation every
+     * so many steps. It is also shown the state on reset and whenever
+     * notifyObservers is called.
+     * @param observer The observer.
+     * @param interval The number of steps between updates: 1 for every
+     *                 step, or 0 for updates only on demand.
+     */
+    public void addObserver(SimulatorObserver observer, int interval)
+    {
+        if(interval < 0) {
+            throw new IllegalArgumentException("Negative interval: " + interval);
+        }
+        observers.add(observer);
+        intervals.add(interval);
+    }
+
+    /**
+     * Stop showing the state of the simulation to an observer.
+     * @param observer The observer.
+     */
+    public void removeObserver(SimulatorObserver observer)
+    {
+        int index = observers.indexOf(observer);
+        if(index >= 0) {
+            observers.remove(index);
+            intervals.remove(index);
+        }
+    }
+
+    /**
+     * Show the current state of the simulation to every observer,
+     * whatever its cadence.
+     */
+    public void notifyObservers()
+    {
+        for(SimulatorObserver observer : observers) {
+            observer.update(step, field, hour);
+        }
     }
 
     /**
@@ -118,12 +363,132 @@ public class Simulator
      */
     public void simulate(int numSteps)
     {
-        for(int step = 1; step <= numSteps && view.isViable(field); step++) {
+        for(int step = 1; step <= numSteps && isViable(); step++) {
             simulateOneStep();
             // delay(60);   // uncomment this to run more slowly
         }
     }
 
+    /**
+     * Choose how many threads the actors act on. With more than one,
+     * the field is split into strips that are stepped in parallel.
+     * @param threads The number of threads to use.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+        if(stepper != null) {
+            stepper.shutdown();
+            stepper = null;
+        }
+        if(engine != null) {
+            engine.shutdown();
+            engine = null;
+        }
+        // The engines seed their streams from a stream of their own,
+        // so that making them does not disturb the run.
+        Random previous = Randomizer.setThreadRandom(new RandomStream(~seed));
+        try {
+            if(synchronous) {
+                engine = new SynchronousEngine(field, threads);
+            }
+            else if(threads > 1) {
+                stepper = new ParallelStepper(field, threads);
+                stepper.setLockFree(lockFree);
+            }
+        }
+        finally {
+            Randomizer.setThreadRandom(previous);
+        }
+    }
+
+    /**
+     * Choose the seed from which every random number of a run is made,
+     * and reset the simulation. Two runs with the same seed and the
+     * same settings turn out the same, except in lock-free mode.
+     * @param seed The seed.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+        setThreads(threads);
+        reset();
+    }
+
+    /**
+     * Choose the probability that a member of a species is created in
+     * any given grid position, to start runs with another mix of
+     * species, and reset the simulation. The species are tried in
+     * turn for each position, so a species is only tried where none
+     * before it was created.
+     * @param code The species code.
+     * @param probability The probability, from 0 to 1.
+     */
+    public void setCreationProbability(int code, double probability)
+    {
+        creationProbabilities[code] = probability;
+        reset();
+    }
+
+    /**
+     * Choose the probabilities of creating every species at once, and
+     * reset the simulation only once (see setCreationProbability).
+     * @param probabilities The probability of each species, indexed by
+     *                      species code, from 0 to 1.
+     */
+    public void setCreationProbabilities(double[] probabilities)
+    {
+        System.arraycopy(probabilities, 0, creationProbabilities, 0, creationProbabilities.length);
+        reset();
+    }
+
+    /**
+     * Return the probabilities of creating each species.
+     * @return A copy of the probabilities, indexed by species code.
+     */
+    public double[] getCreationProbabilities()
+    {
+        return creationProbabilities.clone();
+    }
+
+    /**
+     * Choose whether the strips of the field act all at once, with
+     * actors racing for cells (see ParallelStepper.setLockFree). This
+     * only has an effect with more than one thread.
+     * @param lockFree Whether the strips act at once.
+     */
+    public void setLockFree(boolean lockFree)
+    {
+        this.lockFree = lockFree;
+        setThreads(threads);
+    }
+
+    /**
+     * Choose whether the actors take their steps synchronously, all
+     * deciding from the field as it was at the start of the step (see
+     * SynchronousEngine), or in turn. A synchronous run turns out the
+     * same whatever the number of threads.
+     * @param synchronous Whether to step synchronously.
+     */
+    public void setSynchronous(boolean synchronous)
+    {
+        this.synchronous = synchronous;
+        setThreads(threads);
+    }
+
+    /**
+     * Choose whether the animals are kept packed in herds (see
+     * HerdEngine) rather than as objects. The other actors stay objects.
+     * Packed animals step on the calling thread, whatever the other
+     * settings, and the simulation is reset.
+     * @param packed Whether to pack the animals.
+     */
+    public void setPacked(boolean packed)
+    {
+        herds = packed ? new HerdEngine(field) : null;
+        reset();
+    }
+
     /**
      * Run the simulation from its current state for a single step.
      * Iterate over the whole field updating the state of each
@@ -133,41 +498,111 @@ public class Simulator
     {
         step++;
         
-        time.incrementHour(step);
-        hour = time.getHours();
-        weather.setWeather(hour);
-        
-        
-        // Provide space for newborn actors.
-        List<Actor> newActors = new ArrayList<>();        
-        // Let all actors act.
-        for(Iterator<Actor> it = actors.iterator(); it.hasNext(); ) {
-            Actor actor = it.next();
-            actor.act(newActors);
-            if(!actor.isAlive()) {
-                it.remove();
+        Random previous = Randomizer.setThreadRandom(random);
+        try {
+            time.incrementHour(step);
+            hour = time.getHours();
+            weather.setWeather(hour);
+
+            // Let all actors act. Dead actors are removed and the
+            // newly born ones added to the list.
+            if(herds != null) {
+                herds.act();
+                actors.act();
+            }
+            else if(engine != null) {
+                engine.act(actors, step);
             }
+            else if(stepper != null) {
+                stepper.act(actors, step);
+            }
+            else {
+                actors.act();
+            }
+            field.endStep();
+        }
+        finally {
+            Randomizer.setThreadRandom(previous);
         }
 
-        // Add the newly born actors to the main lists.
-        actors.addAll(newActors);
+        for(int i = 0; i < observers.size(); i++) {
+            int interval = intervals.get(i);
+            if(interval > 0 && step % interval == 0) {
+                observers.get(i).update(step, field, hour);
+            }
+        }
+    }
 
-        view.showStatus(step, field, hour);
-        
+    /**
+     * @return The field, which can be handed on to a new simulation.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+
+    /**
+     * @return The number of steps taken since the last reset.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * Determine whether the simulation should continue to run.
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable()
+    {
+        // Every live actor, and every packed animal, is in the field.
+        return Integer.bitCount(field.getSpeciesPresent()) > 1;
     }
 
     /**
      * Reset the simulation to a starting position.
      */
     public void reset()
+    {
+        start(false);
+    }
+
+    /**
+     * Start the simulation from step 0, either on a freshly populated
+     * field or carrying on with what the field holds.
+     * @param carry Whether to carry on with what the field holds.
+     */
+    private void start(boolean carry)
     {
         step = 0;
         hour = 0;
         actors.clear();
-        populate();
+        // The dead of the last run are not reborn in this one.
+        ActorPool.drain();
+        if(herds != null) {
+            herds.clear();
+        }
+        random = new RandomStream(seed);
+        Random previous = Randomizer.setThreadRandom(random);
+        try {
+            // The clock starts again too, or the weather of a run would
+            // depend on how long the last one ran.
+            time = new Time(changes);
+            weather = new Weather(changes);
+            field.setConditions(time, weather);
+            if(carry) {
+                carryOn();
+            }
+            else {
+                populate();
+            }
+        }
+        finally {
+            Randomizer.setThreadRandom(previous);
+        }
 
-        // Show the starting state in the view.
-        view.showStatus(step, field, hour);
+        // Show the starting state to the observers.
+        notifyObservers();
         
     }
 
@@ -178,49 +613,93 @@ public class Simulator
     {
         Random rand = Randomizer.getRandom();
         field.clear();
-        plantField.clear();
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
-                if(rand.nextDouble() <= SHARK_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Shark shark = new Shark(true, field, location);
-                    actors.add(shark);
+                if(rand.nextDouble() <= creationProbabilities[Species.SHARK]) {
+                    create(Species.SHARK, field.getLocation(row, col));
                 }
-                else if(rand.nextDouble() <= SHRIMP_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Shrimp shrimp = new Shrimp(true, field, location);
-                    actors.add(shrimp);
+                else if(rand.nextDouble() <= creationProbabilities[Species.SHRIMP]) {
+                    create(Species.SHRIMP, field.getLocation(row, col));
                 }
-                else if(rand.nextDouble() <= SEAOTTER_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Otter otter = new Otter(true, field, location);
-                    actors.add(otter);
+                else if(rand.nextDouble() <= creationProbabilities[Species.OTTER]) {
+                    create(Species.OTTER, field.getLocation(row, col));
                 }
-                else if(rand.nextDouble() <= PLANKTON_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Plankton plankton = new Plankton(true, field, location);
-                    actors.add(plankton);
+                else if(rand.nextDouble() <= creationProbabilities[Species.PLANKTON]) {
+                    create(Species.PLANKTON, field.getLocation(row, col));
                 }
-                else if(rand.nextDouble() <= HUMAN_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Human human = new Human(true, field, location);
-                    actors.add(human);
+                else if(rand.nextDouble() <= creationProbabilities[Species.HUMAN]) {
+                    create(Species.HUMAN, field.getLocation(row, col));
                 }
-                else if(rand.nextDouble() <= PLANT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Plant plant = new Plant(true, field, location);
-                    actors.add(plant);
+                else if(rand.nextDouble() <= creationProbabilities[Species.PLANT]) {
+                    create(Species.PLANT, field.getLocation(row, col));
                 }
-                else if(rand.nextDouble() <= PLASTIC_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Plastic plastic = new Plastic(field, location);
-                    actors.add(plastic);
+                else if(rand.nextDouble() <= creationProbabilities[Species.PLASTIC]) {
+                    create(Species.PLASTIC, field.getLocation(row, col));
                 }
                 // else leave the location empty.
             }
         }   
     }
 
+    /**
+     * Carry on with what the field holds, as when it is handed on by
+     * an earlier simulation. The actors in the field join this one as
+     * they are. A cell with a species but no actor, as in a grid mapped
+     * from the file of an earlier run (see OffHeapGrid) or one left by
+     * packed animals, gets a new member of that species of random age.
+     */
+    private void carryOn()
+    {
+        for(int row = 0; row < field.getDepth(); row++) {
+            for(int col = 0; col < field.getWidth(); col++) {
+                int code = field.getSpeciesCode(row, col);
+                if(code != Species.EMPTY) {
+                    Object occupant = field.getObjectAt(row, col);
+                    if(occupant instanceof Actor) {
+                        actors.add((Actor) occupant);
+                    }
+                    else {
+                        create(code, field.getLocation(row, col));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a member of a species of random age, packed in a herd if
+     * the animals are packed.
+     * @param code The species code.
+     * @param location Where to put it.
+     */
+    private void create(int code, Location location)
+    {
+        if(herds != null && (Species.ANIMALS & Species.bit(code)) != 0) {
+            herds.add(code, location, true);
+        }
+        else if(code == Species.SHARK) {
+            actors.add(new Shark(true, field, location));
+        }
+        else if(code == Species.SHRIMP) {
+            actors.add(new Shrimp(true, field, location));
+        }
+        else if(code == Species.OTTER) {
+            actors.add(new Otter(true, field, location));
+        }
+        else if(code == Species.PLANKTON) {
+            actors.add(new Plankton(true, field, location));
+        }
+        else if(code == Species.HUMAN) {
+            actors.add(new Human(true, field, location));
+        }
+        else if(code == Species.PLANT) {
+            actors.add(new Plant(true, field, location));
+        }
+        else if(code == Species.PLASTIC) {
+            actors.add(new Plastic(field, location));
+        }
+    }
+
     /**
      * Pause for a given time.
      * @param millisec  The time to pause for, in milliseconds
@@ -0,0 +1,19 @@
+/**
+ * Something that is shown the state of a simulation as it runs, such
+ * as a view, a statistics collector or an exporter. An observer is
+ * added to a Simulator with a cadence: every step, every so many
+ * steps, or only when asked for (see Simulator.addObserver).
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public interface SimulatorObserver
+{
+    /**
+     * Observe the state of the simulation after a step.
+     * @param step The number of the step, 0 for the starting state.
+     * @param field The field, which must not be changed.
+     * @param hour The hour of the day.
+     */
+    void update(int step, Field field, int hour);
+}
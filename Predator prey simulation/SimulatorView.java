@@ -17,7 +17,7 @@ import java.util.Map;
  * @author Rakshika Kodeswaran and Adam Tlemsani
  * @version 2021.03.03
  */
-public class SimulatorView extends JFrame
+public class SimulatorView extends JFrame implements SimulatorObserver, SnapshotObserver
 {
     // Colors used for empty locations.
     private static final Color EMPTY_COLOR = Color.white;
@@ -115,36 +115,63 @@ public class SimulatorView extends JFrame
      * @param field The field whose status is to be displayed.
      */
     public void showStatus(int step, Field field, int hour)
+    {
+        show(new FieldSnapshot(step, hour, field, null));
+    }
+
+    /**
+     * Show a snapshot of the field.
+     * @param snapshot The snapshot.
+     */
+    public void show(FieldSnapshot snapshot)
     {
         if(!isVisible()) {
             setVisible(true);
         }
 
-        stepLabel.setText(STEP_PREFIX + step);
-        tempLabel.setText(TEMP_PREFIX + Weather.getTemperature() + TEMP_SUFFIX);
-        timeLabel.setText(TIME_PREFIX + hour + TIME_SUFFIX);
+        stepLabel.setText(STEP_PREFIX + snapshot.getStep());
+        tempLabel.setText(TEMP_PREFIX + snapshot.getTemperature() + TEMP_SUFFIX);
+        timeLabel.setText(TIME_PREFIX + snapshot.getHour() + TIME_SUFFIX);
+
+        // The color of each species, looked up once per snapshot.
+        Color[] palette = new Color[Species.MAX_SPECIES];
+        palette[Species.EMPTY] = EMPTY_COLOR;
+        for(int code = 1; code < Species.count(); code++) {
+            palette[code] = getColor(Species.classOf(code));
+        }
 
         stats.reset();
         fieldView.preparePaint();
 
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    stats.incrementCount(animal.getClass());
-                    fieldView.drawMark(col, row, getColor(animal.getClass()));
-                }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
-                }
+        for(int row = 0; row < snapshot.getDepth(); row++) {
+            for(int col = 0; col < snapshot.getWidth(); col++) {
+                fieldView.drawMark(col, row, palette[snapshot.getSpeciesCode(row, col)]);
+            }
+        }
+        for(int code = 1; code < Species.count(); code++) {
+            int population = snapshot.getPopulation(code);
+            if(population > 0) {
+                stats.incrementCount(Species.classOf(code), population);
             }
         }
         stats.countFinished();
 
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
+        // The counts are up to date, so no field is needed.
+        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(null));
         fieldView.repaint();
     }
 
+    /**
+     * Show the state of the simulation after a step.
+     * @param step The number of the step.
+     * @param field The field.
+     * @param hour The hour of the day.
+     */
+    public void update(int step, Field field, int hour)
+    {
+        showStatus(step, field, hour);
+    }
+
     /**
      * Determine whether the simulation should continue to run.
      * @return true If there is more than one species alive.
@@ -0,0 +1,17 @@
+/**
+ * Something that is shown snapshots of a simulation on a thread of its
+ * own, such as a view drawing the field. A RenderPipeline hands the
+ * snapshots over, and skips those that come while one is being shown.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public interface SnapshotObserver
+{
+    /**
+     * Show a snapshot. The snapshot is only lent: it must not be kept
+     * after this returns.
+     * @param snapshot The snapshot.
+     */
+    void show(FieldSnapshot snapshot);
+}
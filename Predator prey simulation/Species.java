@@ -0,0 +1,132 @@
+/**
+ * A registry of the kinds of actor that can be placed in a field.
+ * Each class is given a small code, starting at 1 (0 means an empty
+ * cell). A set of species is an int with the bit (1 << code) set for
+ * each species in the set.
+ *
+ * The species of the simulation are registered up front so that they
+ * always get the same codes. Any other class is registered the first
+ * time it is seen.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class Species
+{
+    // The largest number of codes, including the empty code.
+    public static final int MAX_SPECIES = 16;
+    // The code of an empty cell.
+    public static final int EMPTY = 0;
+
+    // The classes that have been given codes, indexed by code.
+    private static final Class<?>[] classes = new Class<?>[MAX_SPECIES];
+    // The number of codes in use, including the empty code.
+    private static volatile int count = 1;
+
+    // Codes of the species in the simulation.
+    public static final int SHARK = register(Shark.class);
+    public static final int SHRIMP = register(Shrimp.class);
+    public static final int OTTER = register(Otter.class);
+    public static final int PLANKTON = register(Plankton.class);
+    public static final int HUMAN = register(Human.class);
+    public static final int PLANT = register(Plant.class);
+    public static final int PLASTIC = register(Plastic.class);
+
+    // The set of all animal species.
+    public static final int ANIMALS = bit(SHARK) | bit(SHRIMP) | bit(OTTER) | bit(PLANKTON);
+
+    /**
+     * Give a class a code, if it does not have one already.
+     * @param actorClass The class to register.
+     * @return The code of the class.
+     */
+    public static synchronized int register(Class<?> actorClass)
+    {
+        for(int code = 1; code < count; code++) {
+            if(classes[code] == actorClass) {
+                return code;
+            }
+        }
+        if(count == MAX_SPECIES) {
+            throw new IllegalStateException("Too many species: " + actorClass.getName());
+        }
+        classes[count] = actorClass;
+        return count++;
+    }
+
+    /**
+     * Return the code of a class, registering it if necessary.
+     * @param actorClass The class.
+     * @return The code of the class.
+     */
+    public static int codeOf(Class<?> actorClass)
+    {
+        int registered = count;
+        for(int code = 1; code < registered; code++) {
+            if(classes[code] == actorClass) {
+                return code;
+            }
+        }
+        return register(actorClass);
+    }
+
+    /**
+     * Return the code of an object's class. The marker of a packed
+     * animal (see HerdEngine) has the code of the animal's species.
+     * @param actor The object, or null.
+     * @return The code of the object's class, or EMPTY for null.
+     */
+    public static int codeOf(Object actor)
+    {
+        if(actor == null) {
+            return EMPTY;
+        }
+        if(actor instanceof HerdEngine.Marker) {
+            return ((HerdEngine.Marker) actor).getCode();
+        }
+        return codeOf(actor.getClass());
+    }
+
+    /**
+     * Return whether an object in the field is a male animal, either an
+     * animal object or the marker of a packed one.
+     * @param actor The object, or null.
+     * @return true if the object is a male animal.
+     */
+    public static boolean isMale(Object actor)
+    {
+        if(actor instanceof Animal) {
+            return ((Animal) actor).isMale();
+        }
+        return actor instanceof HerdEngine.Marker
+               && ((HerdEngine.Marker) actor).isMale();
+    }
+
+    /**
+     * Return the class that has the given code.
+     * @param code A species code.
+     * @return The class, or null if the code is not in use.
+     */
+    public static Class<?> classOf(int code)
+    {
+        return classes[code];
+    }
+
+    /**
+     * @return The number of codes in use, including the empty code.
+     */
+    public static int count()
+    {
+        return count;
+    }
+
+    /**
+     * Return the set containing just the given species.
+     * @param code A species code.
+     * @return A species set.
+     */
+    public static int bit(int code)
+    {
+        return 1 << code;
+    }
+}
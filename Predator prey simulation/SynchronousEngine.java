@@ -0,0 +1,288 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Step the actors of a field synchronously: every actor decides what to
+ * do from the field as it was at the start of the step, and only then
+ * is the field changed. A step has these phases.
+ *
+ *  - Plan: the field is frozen and each actor records in an Intent the
+ *    cell it wants to move into and the cells it wants to give birth
+ *    into. This is done on several threads at once.
+ *  - Claim: each cell an actor wants is claimed with the actor's key,
+ *    and the lowest key wins. A key is made from the step, the actor's
+ *    starting cell and a seed, so the same actor does not always win.
+ *  - Commit: the prey of the winners are removed, and then the actors
+ *    carry out what they won, in order. An actor that lost a cell stays
+ *    where it is, or has fewer young; an actor that was eaten does
+ *    nothing, and the cells it won stay empty.
+ *
+ * The claims and the intents stand in for the next generation of the
+ * field, so there is a single Field rather than two to swap. Nothing in
+ * a step depends on which thread planned which actor, so a run turns
+ * out the same whatever the number of threads.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class SynchronousEngine
+{
+    // The number of actors planned by each task.
+    private static final int CHUNK_SIZE = 256;
+    // The claim of a cell that nobody wants.
+    private static final long UNCLAIMED = Long.MAX_VALUE;
+    // Spreads consecutive numbers across the range of seeds.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // The field the actors live in.
+    private Field field;
+    // The threads that plan the actors.
+    private ForkJoinPool pool;
+    // The lowest key claiming each cell during a step.
+    private AtomicLongArray claims;
+    // The plan of each actor, by its position in the actor list.
+    private Intent[] intents;
+    // The actors of the current step.
+    private ActorList actors;
+    // Receives the actors born during a step.
+    private List<Actor> newborns;
+    // The seed from which the keys and generators are made.
+    private long seed;
+
+    /**
+     * Create an engine for a field.
+     * @param field The field whose actors are stepped. Its cells must
+     *              have packed indexes.
+     * @param threads The number of threads to plan on.
+     * @throws ArithmeticException if the field has more cells than
+     *         packed indexes can address.
+     */
+    public SynchronousEngine(Field field, int threads)
+    {
+        this.field = field;
+        pool = new ForkJoinPool(threads);
+        claims = new AtomicLongArray(Math.toIntExact((long) field.getDepth() * field.getWidth()));
+        for(int i = 0; i < claims.length(); i++) {
+            claims.set(i, UNCLAIMED);
+        }
+        intents = new Intent[0];
+        newborns = new ArrayList<>();
+        seed = Randomizer.getRandom().nextLong();
+    }
+
+    /**
+     * Let every actor take one synchronous step. Dead actors are removed
+     * and the newborns are added, as by ActorList.act.
+     * @param actors The actors to step.
+     * @param step The number of the step, used to make the keys.
+     */
+    public void act(ActorList actors, int step)
+    {
+        this.actors = actors;
+        actors.wake();
+        int size = actors.size();
+        if(intents.length < size) {
+            int old = intents.length;
+            intents = Arrays.copyOf(intents, Math.max(size, 2 * old));
+            for(int i = old; i < intents.length; i++) {
+                intents[i] = new Intent();
+            }
+        }
+        long stepSeed = mix(seed + step * GOLDEN_GAMMA);
+        for(int i = 0; i < size; i++) {
+            Location location = actors.get(i).getLocation();
+            int cell = location == null ? -1 : field.index(location);
+            long bits = mix(stepSeed + cell);
+            // The cell in the low bits keeps the keys distinct.
+            intents[i].reset(cell, (bits >>> 32) << 32 | (cell & 0xFFFFFFFFL));
+            intents[i].getRandom().setSeed(bits);
+        }
+
+        field.setFrozen(true);
+        try {
+            runChunks(size, this::plan);
+        }
+        finally {
+            field.setFrozen(false);
+        }
+        runChunks(size, this::claim);
+        runChunks(size, this::resolve);
+
+        // Remove the prey of the actors that won their targets.
+        for(int i = 0; i < size; i++) {
+            Intent intent = intents[i];
+            if(actors.get(i).isAlive() && intent.isTargetWon()
+                    && intent.getFood() != Species.EMPTY) {
+                Actor prey = (Actor) field.getObjectAt(intent.getTarget());
+                if(prey != null) {
+                    prey.setDead();
+                }
+                if(intent.getFood() != Species.PLASTIC) {
+                    Census.record(Census.PREDATION, intent.getFood());
+                }
+            }
+        }
+        // Actors that died while planning are still in the field.
+        for(int i = 0; i < size; i++) {
+            int cell = intents[i].getCell();
+            if(!actors.get(i).isAlive() && cell >= 0
+                    && field.getObjectAt(cell) == actors.get(i)) {
+                field.clear(cell);
+            }
+        }
+        newborns.clear();
+        for(int i = 0; i < size; i++) {
+            Random previous = Randomizer.setThreadRandom(intents[i].getRandom());
+            try {
+                actors.get(i).commit(intents[i], newborns);
+            }
+            finally {
+                Randomizer.setThreadRandom(previous);
+            }
+            release(intents[i]);
+        }
+        actors.sweep(newborns);
+        newborns.clear();
+        this.actors = null;
+    }
+
+    /**
+     * Stop the threads. The engine cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Let some actors plan, each with its own generator.
+     * @param from The position of the first actor.
+     * @param to The position after the last actor.
+     */
+    private void plan(int from, int to)
+    {
+        Random previous = Randomizer.setThreadRandom(null);
+        try {
+            for(int i = from; i < to; i++) {
+                Actor actor = actors.get(i);
+                if(actor.isAlive() && intents[i].getCell() >= 0) {
+                    Randomizer.setThreadRandom(intents[i].getRandom());
+                    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+                    actor.plan(intents[i]);
+                    if(Metrics.ENABLED) {
+                        Metrics.recordTurn(Species.codeOf(actor), start);
+                    }
+                }
+            }
+        }
+        finally {
+            Randomizer.setThreadRandom(previous);
+        }
+    }
+
+    /**
+     * Claim the cells wanted by some actors.
+     * @param from The position of the first actor.
+     * @param to The position after the last actor.
+     */
+    private void claim(int from, int to)
+    {
+        for(int i = from; i < to; i++) {
+            Intent intent = intents[i];
+            if(!actors.get(i).isAlive()) {
+                continue;
+            }
+            long key = intent.getKey();
+            if(intent.getTarget() >= 0) {
+                claims.accumulateAndGet(intent.getTarget(), key, Math::min);
+            }
+            for(int b = 0; b < intent.getBirthCount(); b++) {
+                claims.accumulateAndGet(intent.getBirth(b), key, Math::min);
+            }
+        }
+    }
+
+    /**
+     * Record which of their claims some actors won.
+     * @param from The position of the first actor.
+     * @param to The position after the last actor.
+     */
+    private void resolve(int from, int to)
+    {
+        for(int i = from; i < to; i++) {
+            Intent intent = intents[i];
+            long key = intent.getKey();
+            if(intent.getTarget() >= 0 && claims.get(intent.getTarget()) == key) {
+                intent.setWon(-1);
+            }
+            for(int b = 0; b < intent.getBirthCount(); b++) {
+                if(claims.get(intent.getBirth(b)) == key) {
+                    intent.setWon(b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Give up the cells claimed by an intent, ready for the next step.
+     * @param intent The intent.
+     */
+    private void release(Intent intent)
+    {
+        if(intent.getTarget() >= 0) {
+            claims.set(intent.getTarget(), UNCLAIMED);
+        }
+        for(int b = 0; b < intent.getBirthCount(); b++) {
+            claims.set(intent.getBirth(b), UNCLAIMED);
+        }
+    }
+
+    /**
+     * Run a phase over the actors in chunks, one task per chunk, and
+     * wait for them all.
+     * @param size The number of actors.
+     * @param phase The work to do on each chunk.
+     */
+    private void runChunks(int size, Phase phase)
+    {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for(int from = 0; from < size; from += CHUNK_SIZE) {
+            int start = from;
+            int end = Math.min(size, from + CHUNK_SIZE);
+            tasks.add(pool.submit(() -> phase.run(start, end)));
+        }
+        for(ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Scramble the bits of a number, so that keys made from nearby
+     * numbers are unrelated.
+     * @param z The number.
+     * @return The scrambled number.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The work of one phase on a range of actors.
+     */
+    private interface Phase
+    {
+        /**
+         * @param from The position of the first actor.
+         * @param to The position after the last actor.
+         */
+        void run(int from, int to);
+    }
+}
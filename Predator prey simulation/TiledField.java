@@ -0,0 +1,606 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A field for very large, mostly empty grids. The grid is split into
+ * square tiles, and storage for a tile is only allocated once one of
+ * its cells is occupied. Memory use therefore follows the occupied
+ * area of the grid rather than its size.
+ *
+ * A tile that empties is not released straight away, or an animal
+ * moving about an otherwise empty tile would free and remake it at
+ * every move. Empty tiles are released together at the end of a step
+ * (see endStep), once there are enough of them to be worth the sweep.
+ *
+ * Each tile counts the members of each species it holds, so searches
+ * within a radius skip the tiles that hold none of the species wanted.
+ *
+ * A tiled field can be used anywhere a Field is used, within the limits
+ * described in CoordinateField. Locations are shared while their tile
+ * is allocated, but a location in an empty tile is created when it is
+ * asked for.
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class TiledField extends CoordinateField
+{
+    // The side of a tile is 2 to the power of TILE_SHIFT cells.
+    private static final int TILE_SHIFT = 6;
+    // The number of rows and columns in a tile.
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+    // Mask for the position of a row or column within its tile.
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    // The number of empty tiles that may be kept, however few tiles
+    // are in use.
+    private static final int MIN_EMPTY_TILES = 16;
+    // Empty tiles are released once they are more than this fraction
+    // of the tiles allocated.
+    private static final int EMPTY_TILE_SHARE = 4;
+    // The layer marking the cells that hold anything.
+    private static final int OCCUPIED = Species.EMPTY;
+    // Stands for the layer of male animals.
+    private static final int MALES = -1;
+
+    // The number of tiles down and across the field.
+    private int tileRows, tileCols;
+    // The tiles, in reading order. An empty tile is null.
+    private Tile[] tiles;
+    // The number of tiles currently allocated, and how many of them
+    // are empty. Strips of the field may be updated by different
+    // threads, so the counts are atomic.
+    private AtomicInteger tileCount;
+    private AtomicInteger emptyTiles;
+
+    /**
+     * Represent a tiled field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public TiledField(int depth, int width)
+    {
+        super(depth, width);
+        tileRows = (depth + TILE_MASK) >>> TILE_SHIFT;
+        tileCols = (width + TILE_MASK) >>> TILE_SHIFT;
+        tiles = new Tile[Math.multiplyExact(tileRows, tileCols)];
+        tileCount = new AtomicInteger();
+        emptyTiles = new AtomicInteger();
+    }
+
+    /**
+     * Empty the field.
+     */
+    public void clear()
+    {
+        Arrays.fill(tiles, null);
+        tileCount.set(0);
+        emptyTiles.set(0);
+        resetPopulation();
+    }
+
+    /**
+     * Clear the given row and column. A tile whose last cell is
+     * emptied is kept until the end of the step.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void clear(int row, int col)
+    {
+        if(isFrozen()) {
+            return;
+        }
+        int t = tileIndex(row, col);
+        Tile tile = tiles[t];
+        if(tile != null) {
+            int cell = cellIndex(row, col);
+            Object previous = tile.cells[cell];
+            if(previous != null) {
+                clearBits(tile, row, col);
+                tile.cells[cell] = null;
+                tile.occupied--;
+                if(tile.occupied == 0) {
+                    emptyTiles.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Place an animal at the given location.
+     * If there is already an animal at the location it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void place(Object animal, int row, int col)
+    {
+        if(isFrozen()) {
+            return;
+        }
+        if(animal == null) {
+            clear(row, col);
+            return;
+        }
+        int t = tileIndex(row, col);
+        Tile tile = tiles[t];
+        if(tile == null) {
+            tile = new Tile();
+            tiles[t] = tile;
+            tileCount.incrementAndGet();
+        }
+        else if(tile.occupied == 0) {
+            // An empty tile waiting to be released is in use again.
+            emptyTiles.decrementAndGet();
+        }
+        int cell = cellIndex(row, col);
+        Object previous = tile.cells[cell];
+        if(previous != null) {
+            clearBits(tile, row, col);
+        }
+        else {
+            tile.occupied++;
+        }
+        tile.cells[cell] = animal;
+        setBits(tile, row, col, animal);
+    }
+
+    /**
+     * Return the animal at the given location, if any.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The animal at the given location, or null if there is none.
+     */
+    public Object getObjectAt(int row, int col)
+    {
+        Tile tile = tiles[tileIndex(row, col)];
+        if(tile == null) {
+            return null;
+        }
+        return tile.cells[cellIndex(row, col)];
+    }
+
+    /**
+     * Return the species code of the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The code of the cell's occupant, or Species.EMPTY.
+     */
+    public int getSpeciesCode(int row, int col)
+    {
+        Tile tile = tiles[tileIndex(row, col)];
+        if(tile == null) {
+            return Species.EMPTY;
+        }
+        return tile.codes[cellIndex(row, col)];
+    }
+
+    /**
+     * Return the location of the given row and column. The location
+     * is shared while the cell's tile is allocated.
+     * @param row The row.
+     * @param col The column.
+     * @return The location of the cell.
+     */
+    public Location getLocation(int row, int col)
+    {
+        Tile tile = tiles[tileIndex(row, col)];
+        if(tile == null) {
+            return new Location(row, col);
+        }
+        int cell = cellIndex(row, col);
+        Location location = tile.locations[cell];
+        if(location == null) {
+            location = new Location(row, col);
+            tile.locations[cell] = location;
+        }
+        return location;
+    }
+
+    /**
+     * Return the directions from a location that lead to a neighbour
+     * holding one of the given species.
+     * @param location The location.
+     * @param species The set of species to look for.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int speciesMask(Location location, int species)
+    {
+        int row = location.getRow();
+        int col = location.getCol();
+        int found = 0;
+        for(int code = 1; code < Species.MAX_SPECIES; code++) {
+            if((species & (1 << code)) != 0) {
+                found |= neighbourBits(code, row, col);
+            }
+        }
+        return found & directionsInside(row, col);
+    }
+
+    /**
+     * Return the directions from a location that lead to a neighbour
+     * holding a male animal.
+     * @param location The location.
+     * @return A mask with one bit set for each matching direction.
+     */
+    public int maleMask(Location location)
+    {
+        int row = location.getRow();
+        int col = location.getCol();
+        return neighbourBits(MALES, row, col) & directionsInside(row, col);
+    }
+
+    /**
+     * Return the directions from a location that lead to an empty cell.
+     * @param location The location.
+     * @return A mask with one bit set for each free direction.
+     */
+    public int freeMask(Location location)
+    {
+        int row = location.getRow();
+        int col = location.getCol();
+        return ~neighbourBits(OCCUPIED, row, col) & directionsInside(row, col);
+    }
+
+    /**
+     * Find the nearest location to the given one, within a radius, that
+     * holds one of the given species. Tiles holding none of the species
+     * are skipped, and the others are read a row at a time.
+     * @param location The centre of the search.
+     * @param radius The furthest distance to look.
+     * @param species The set of species to look for.
+     * @return The nearest matching location, or null if there is none.
+     */
+    public Location query(Location location, int radius, int species)
+    {
+        species &= ~Species.bit(Species.EMPTY);
+        int row = location.getRow();
+        int col = location.getCol();
+        int top = Math.max(0, row - radius);
+        int bottom = Math.min(getDepth() - 1, row + radius);
+        int left = Math.max(0, col - radius);
+        int right = Math.min(getWidth() - 1, col + radius);
+        int bestRow = -1;
+        int bestCol = -1;
+        int bestDistance = radius + 1;
+        for(int tileRow = top >>> TILE_SHIFT; tileRow <= bottom >>> TILE_SHIFT; tileRow++) {
+            int rowFrom = Math.max(top, tileRow << TILE_SHIFT);
+            int rowTo = Math.min(bottom, (tileRow << TILE_SHIFT) + TILE_MASK);
+            for(int tileCol = left >>> TILE_SHIFT; tileCol <= right >>> TILE_SHIFT; tileCol++) {
+                Tile tile = tiles[tileRow * tileCols + tileCol];
+                int present = tile == null ? 0 : tile.species & species;
+                if(present == 0) {
+                    continue;
+                }
+                int colFrom = Math.max(left, tileCol << TILE_SHIFT);
+                long columns = columnMask(colFrom, Math.min(right, (tileCol << TILE_SHIFT) + TILE_MASK));
+                for(int r = rowFrom; r <= rowTo; r++) {
+                    long bits = speciesWord(tile, present, r) & columns;
+                    while(bits != 0) {
+                        int c = (colFrom & ~TILE_MASK) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        int distance = Math.max(Math.abs(r - row), Math.abs(c - col));
+                        if(distance > 0 && distance < bestDistance) {
+                            bestRow = r;
+                            bestCol = c;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return bestRow < 0 ? null : getLocation(bestRow, bestCol);
+    }
+
+    /**
+     * Count the cells within a radius of a location that hold one of
+     * the given species, not counting the location itself.
+     * @param location The centre of the search.
+     * @param radius The furthest distance to look.
+     * @param species The set of species to look for.
+     * @return The number of matching cells.
+     */
+    public int count(Location location, int radius, int species)
+    {
+        species &= ~Species.bit(Species.EMPTY);
+        int row = location.getRow();
+        int col = location.getCol();
+        int top = Math.max(0, row - radius);
+        int bottom = Math.min(getDepth() - 1, row + radius);
+        int left = Math.max(0, col - radius);
+        int right = Math.min(getWidth() - 1, col + radius);
+        int total = 0;
+        for(int tileRow = top >>> TILE_SHIFT; tileRow <= bottom >>> TILE_SHIFT; tileRow++) {
+            int rowFrom = Math.max(top, tileRow << TILE_SHIFT);
+            int rowTo = Math.min(bottom, (tileRow << TILE_SHIFT) + TILE_MASK);
+            for(int tileCol = left >>> TILE_SHIFT; tileCol <= right >>> TILE_SHIFT; tileCol++) {
+                Tile tile = tiles[tileRow * tileCols + tileCol];
+                int present = tile == null ? 0 : tile.species & species;
+                if(present == 0) {
+                    continue;
+                }
+                int colFrom = Math.max(left, tileCol << TILE_SHIFT);
+                int colTo = Math.min(right, (tileCol << TILE_SHIFT) + TILE_MASK);
+                if(rowTo - rowFrom == TILE_MASK && colTo - colFrom == TILE_MASK) {
+                    // The whole tile is inside the square.
+                    for(int set = present; set != 0; set &= set - 1) {
+                        total += tile.counts[Integer.numberOfTrailingZeros(set)];
+                    }
+                }
+                else {
+                    long columns = columnMask(colFrom, colTo);
+                    for(int r = rowFrom; r <= rowTo; r++) {
+                        total += Long.bitCount(speciesWord(tile, present, r) & columns);
+                    }
+                }
+            }
+        }
+        if((species & (1 << getSpeciesCode(row, col))) != 0) {
+            total--;
+        }
+        return total;
+    }
+
+    /**
+     * Return the height of the strips of rows that different threads can
+     * update at the same time. A tile's counts are shared by all its
+     * rows, so strips are made of whole rows of tiles.
+     * @return The unit of strip height in rows.
+     */
+    public int getStripUnit()
+    {
+        return TILE_SIZE;
+    }
+
+    /**
+     * Release the tiles that have emptied, if there are more of them
+     * than MIN_EMPTY_TILES and than one in EMPTY_TILE_SHARE of the
+     * tiles allocated. Sweeping looks at every tile of the grid, so
+     * it waits until it will free enough storage to be worth it.
+     */
+    public void endStep()
+    {
+        int empty = emptyTiles.get();
+        if(empty <= MIN_EMPTY_TILES || empty * EMPTY_TILE_SHARE <= tileCount.get()) {
+            return;
+        }
+        for(int t = 0; t < tiles.length; t++) {
+            Tile tile = tiles[t];
+            if(tile != null && tile.occupied == 0) {
+                tiles[t] = null;
+                tileCount.decrementAndGet();
+            }
+        }
+        emptyTiles.set(0);
+    }
+
+    /**
+     * @return The number of tiles currently allocated, including empty
+     *         ones not yet released.
+     */
+    public int getTileCount()
+    {
+        return tileCount.get();
+    }
+
+    /**
+     * @return The number of allocated tiles that are empty.
+     */
+    public int getEmptyTileCount()
+    {
+        return emptyTiles.get();
+    }
+
+    /**
+     * Return the position of the tile holding a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The index of the tile in the tiles array.
+     */
+    private int tileIndex(int row, int col)
+    {
+        checkBounds(row, col);
+        return (row >>> TILE_SHIFT) * tileCols + (col >>> TILE_SHIFT);
+    }
+
+    /**
+     * Return the position of a cell within its tile.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The index of the cell in its tile.
+     */
+    private static int cellIndex(int row, int col)
+    {
+        return (row & TILE_MASK) << TILE_SHIFT | (col & TILE_MASK);
+    }
+
+    /**
+     * Return the bits of a tile's row that hold one of a set of species.
+     * @param tile The tile.
+     * @param species The set of species, all present in the tile.
+     * @param row The row, which must be inside the tile.
+     * @return One bit per column of the tile.
+     */
+    private static long speciesWord(Tile tile, int species, int row)
+    {
+        long bits = 0;
+        for(int set = species; set != 0; set &= set - 1) {
+            bits |= tile.layers[Integer.numberOfTrailingZeros(set)][row & TILE_MASK];
+        }
+        return bits;
+    }
+
+    /**
+     * Return the bits of a tile's row that cover a range of columns.
+     * @param from The first column, which must be in the same tile as to.
+     * @param to The last column.
+     * @return One bit set for each column in the range.
+     */
+    private static long columnMask(int from, int to)
+    {
+        return (-1L << (from & TILE_MASK)) & (-1L >>> (TILE_MASK - (to & TILE_MASK)));
+    }
+
+    /**
+     * Set the species code and layer bits for an animal placed in a cell.
+     * @param tile The cell's tile.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param animal The animal.
+     */
+    private void setBits(Tile tile, int row, int col, Object animal)
+    {
+        long bit = 1L << (col & TILE_MASK);
+        int r = row & TILE_MASK;
+        int code = Species.codeOf(animal);
+        tile.codes[cellIndex(row, col)] = (byte) code;
+        addPopulation(code, 1);
+        if(tile.counts[code]++ == 0) {
+            tile.species |= 1 << code;
+        }
+        if(tile.layers[code] == null) {
+            tile.layers[code] = new long[TILE_SIZE];
+        }
+        tile.layers[code][r] |= bit;
+        tile.layers[OCCUPIED][r] |= bit;
+        if(Species.isMale(animal)) {
+            tile.males[r] |= bit;
+        }
+    }
+
+    /**
+     * Clear the species code and layer bits of a cell whose
+     * occupant is leaving.
+     * @param tile The cell's tile.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    private void clearBits(Tile tile, int row, int col)
+    {
+        long bit = ~(1L << (col & TILE_MASK));
+        int r = row & TILE_MASK;
+        int cell = cellIndex(row, col);
+        int code = tile.codes[cell];
+        addPopulation(code, -1);
+        if(--tile.counts[code] == 0) {
+            tile.species &= ~(1 << code);
+        }
+        tile.layers[code][r] &= bit;
+        tile.codes[cell] = (byte) Species.EMPTY;
+        tile.layers[OCCUPIED][r] &= bit;
+        tile.males[r] &= bit;
+    }
+
+    /**
+     * Gather the bits of the eight neighbours of a cell from a layer
+     * into a direction mask. Bits for directions that leave the grid
+     * are meaningless and must be masked off by the caller.
+     * @param layer The layer to read: a species code, OCCUPIED or MALES.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return A mask with one bit for each direction.
+     */
+    private int neighbourBits(int layer, int row, int col)
+    {
+        int above = rowBits(layer, row - 1, col);
+        int middle = rowBits(layer, row, col);
+        int below = rowBits(layer, row + 1, col);
+        return above | (middle & 1) << 3 | (middle >>> 2) << 4 | below << 5;
+    }
+
+    /**
+     * Read the bits of three neighbouring cells in a row, centred on
+     * the given column. Cells outside the grid read as zero.
+     * @param layer The layer to read.
+     * @param row The row.
+     * @param col The middle column.
+     * @return The three bits, leftmost first.
+     */
+    private int rowBits(int layer, int row, int col)
+    {
+        if(row < 0 || row >= getDepth()) {
+            return 0;
+        }
+        int local = col & TILE_MASK;
+        if(local > 0 && local < TILE_MASK) {
+            // All three cells are in the same tile.
+            return (int) (word(layer, row, col) >>> (local - 1)) & 7;
+        }
+        return bit(layer, row, col - 1) | bit(layer, row, col) << 1 | bit(layer, row, col + 1) << 2;
+    }
+
+    /**
+     * Read the bit of a single cell. Cells outside the grid read as zero.
+     * @param layer The layer to read.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The bit.
+     */
+    private int bit(int layer, int row, int col)
+    {
+        if(col < 0 || col >= getWidth()) {
+            return 0;
+        }
+        return (int) (word(layer, row, col) >>> (col & TILE_MASK)) & 1;
+    }
+
+    /**
+     * Return the word of a layer that covers a tile's row.
+     * @param layer The layer to read.
+     * @param row The row, which must be inside the grid.
+     * @param col A column inside the tile, which must be inside the grid.
+     * @return The bits of the tile's row, or 0 if the tile is empty.
+     */
+    private long word(int layer, int row, int col)
+    {
+        Tile tile = tiles[tileIndex(row, col)];
+        if(tile == null) {
+            return 0;
+        }
+        long[] bits = layer == MALES ? tile.males : tile.layers[layer];
+        if(bits == null) {
+            return 0;
+        }
+        return bits[row & TILE_MASK];
+    }
+
+    /**
+     * The storage for one square tile of the field.
+     */
+    private static class Tile
+    {
+        // The contents of the tile's cells, in reading order.
+        private Object[] cells;
+        // The species code of each cell.
+        private byte[] codes;
+        // The shared locations of the cells, created when first needed.
+        private Location[] locations;
+        // One word per row for each species code, created when first
+        // needed. The OCCUPIED layer marks every occupied cell.
+        private long[][] layers;
+        // One word per row marking the cells holding a male animal.
+        private long[] males;
+        // The number of occupied cells.
+        private int occupied;
+        // The number of members of each species, indexed by species code.
+        private int[] counts;
+        // The set of species with a member in the tile.
+        private int species;
+
+        /**
+         * Create an empty tile.
+         */
+        public Tile()
+        {
+            cells = new Object[TILE_SIZE * TILE_SIZE];
+            codes = new byte[TILE_SIZE * TILE_SIZE];
+            locations = new Location[TILE_SIZE * TILE_SIZE];
+            layers = new long[Species.MAX_SPECIES][];
+            layers[OCCUPIED] = new long[TILE_SIZE];
+            males = new long[TILE_SIZE];
+            occupied = 0;
+            counts = new int[Species.MAX_SPECIES];
+            species = 0;
+        }
+    }
+}
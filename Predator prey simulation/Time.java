@@ -10,15 +10,19 @@ public class Time
 {
     // hour that passes for each step taken.
     private int hour;
+    // The changes that the end of the night is fired to.
+    private Change changes;
     // Whether the time is night or not.
-    private static boolean isNight;
+    private boolean isNight;
 
-    private static String time;
+    private String time;
     /**
      * Represent time in the simulator.
+     * @param changes The changes of the simulation.
      */
-    public Time()
+    public Time(Change changes)
     {
+        this.changes = changes;
         hour = 0;
         isNight = false;
         time = "night";
@@ -27,7 +31,7 @@ public class Time
     /**
      * @return true if it is night, false otherwise.
      */
-    public static boolean isNight()
+    public boolean isNight()
     {
         return isNight;
     }
@@ -55,11 +59,12 @@ public class Time
     }
 
     /**
-     * Set the time between 9pm and 5am as night. 
+     * Set the time between 9pm and 6am as night. 
      */
     private void setNight()
     {
-        if(hour < 6 && hour > 20) {
+        boolean wasNight = isNight;
+        if(hour < 6 || hour > 20) {
             isNight = true;
             time = "night";
         }
@@ -67,12 +72,15 @@ public class Time
             isNight = false;
             time = "day";
         }
+        if(wasNight && !isNight) {
+            changes.fire(Change.DAYBREAK);
+        }
     }
 
     /**
      *  @return The string time for day or night.
      */
-    public static String getTime()
+    public String getTime()
     {
         return time;
     }
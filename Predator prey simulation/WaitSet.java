@@ -0,0 +1,147 @@
+import java.util.Arrays;
+
+/**
+ * Sleeping actors waiting for the same change (see Change), kept by
+ * the step in which their sleep ends in any case. Each step, the
+ * actors whose sleep ends are woken; when the change comes about, all
+ * of them are. An ActorList keeps one wait set for each change.
+ *
+ * The steps are kept modulo the size of the set, so no actor may
+ * sleep for longer than that. An actor that died in its sleep, eaten
+ * or killed, is not woken but recycled (see ActorPool).
+ *
+ * @author Rakshika Kodeswaran and Adam Tlemsani
+ * @version 2021.03.03
+ */
+public class WaitSet
+{
+    // The sleeping actors, by the step in which they wake modulo the
+    // number of slots.
+    private Actor[][] slots;
+    // The step after which each sleeping actor fell asleep.
+    private int[][] since;
+    // The number of sleeping actors in each slot.
+    private int[] counts;
+    // The total number of sleeping actors.
+    private int size;
+
+    /**
+     * Create an empty wait set.
+     * @param steps The number of steps the set covers.
+     */
+    public WaitSet(int steps)
+    {
+        slots = new Actor[steps][];
+        since = new int[steps][];
+        counts = new int[steps];
+        size = 0;
+    }
+
+    /**
+     * Add a sleeping actor.
+     * @param actor The actor, which has just had its turn.
+     * @param step The step in which it had its turn.
+     * @param steps The number of steps it sleeps, less than the number
+     *              the set covers.
+     */
+    public void add(Actor actor, int step, int steps)
+    {
+        // It acts again in the step after the last one it sleeps through.
+        int slot = (step + steps + 1) % slots.length;
+        int count = counts[slot];
+        if(slots[slot] == null) {
+            slots[slot] = new Actor[256];
+            since[slot] = new int[256];
+        }
+        else if(count == slots[slot].length) {
+            slots[slot] = Arrays.copyOf(slots[slot], count * 2);
+            since[slot] = Arrays.copyOf(since[slot], count * 2);
+        }
+        slots[slot][count] = actor;
+        since[slot][count] = step;
+        counts[slot] = count + 1;
+        size++;
+    }
+
+    /**
+     * Wake the actors whose sleep ends in a step, adding them to a list.
+     * @param step The step.
+     * @param into The list to add them to.
+     * @return The number of actors that had died in their sleep.
+     */
+    public int wakeDue(int step, ActorList into)
+    {
+        return wakeSlot(step % slots.length, step, into);
+    }
+
+    /**
+     * Wake every actor, because the change it waits for has come about.
+     * They are woken in the order in which their sleep would have
+     * ended, starting from the slot of this step, so that the order
+     * does not depend on how many steps have been counted before.
+     * @param step The step in which they are woken.
+     * @param into The list to add them to.
+     * @return The number of actors that had died in their sleep.
+     */
+    public int wakeAll(int step, ActorList into)
+    {
+        int dead = 0;
+        for(int i = 0; i < slots.length && size > 0; i++) {
+            dead += wakeSlot((step + i) % slots.length, step, into);
+        }
+        return dead;
+    }
+
+    /**
+     * Remove every actor without waking it.
+     */
+    public void clear()
+    {
+        for(int slot = 0; slot < slots.length; slot++) {
+            if(slots[slot] != null) {
+                Arrays.fill(slots[slot], 0, counts[slot], null);
+            }
+            counts[slot] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return The number of sleeping actors.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Wake the live actors of one slot, telling each how many steps it
+     * slept through, and recycle the dead ones.
+     * @param slot The slot.
+     * @param step The step in which they are woken.
+     * @param into The list to add them to.
+     * @return The number of actors that had died in their sleep.
+     */
+    private int wakeSlot(int slot, int step, ActorList into)
+    {
+        Actor[] due = slots[slot];
+        int count = counts[slot];
+        int dead = 0;
+        for(int i = 0; i < count; i++) {
+            Actor actor = due[i];
+            due[i] = null;
+            if(actor.isAlive()) {
+                actor.wake(step - since[slot][i] - 1);
+                into.add(actor);
+            }
+            else {
+                // It left the field when it died.
+                ActorPool.get().recycle(actor);
+                dead++;
+            }
+        }
+        counts[slot] = 0;
+        size -= count;
+        return dead;
+    }
+}
@@ -10,21 +10,24 @@ import java.util.Random;
  */
 public class Weather
 {
-    private static Random rand = Randomizer.getRandom();
-    private static int temperature;
+    private int temperature;
     
     private boolean isSunny;
     private boolean isRaining;
     private boolean isCloudy;
     // stores the weather condition.
-    private static String weatherCondition;
+    private String weatherCondition;
+    // The changes that the end of rain or sun is fired to.
+    private Change changes;
     /**
      * Create a weather object and randomly assign temperature 
      * to a value up to 30.
+     * @param changes The changes of the simulation.
      */
-    public Weather()
+    public Weather(Change changes)
     {
-        temperature = rand.nextInt(31);
+        this.changes = changes;
+        temperature = Randomizer.getRandom().nextInt(31);
         setCondition();
         setTemperature();
     }
@@ -35,6 +38,8 @@ public class Weather
      */
     private void setCondition()
     {
+        String previous = weatherCondition;
+        Random rand = Randomizer.getRandom();
         if(rand.nextDouble() <= 0.5) {
             isSunny = true;
             weatherCondition = "sunny";
@@ -50,6 +55,12 @@ public class Weather
         else{
             weatherCondition = "normal";
         }
+        if("raining".equals(previous) && !weatherCondition.equals("raining")) {
+            changes.fire(Change.RAIN_STOPS);
+        }
+        if("sunny".equals(previous) && !weatherCondition.equals("sunny")) {
+            changes.fire(Change.SUN_GOES);
+        }
     }
 
     /**
@@ -57,6 +68,7 @@ public class Weather
      */
     private void setTemperature()
     {
+        Random rand = Randomizer.getRandom();
         if(isSunny) {
             temperature = rand.nextInt(18);
         }
@@ -71,7 +83,7 @@ public class Weather
     /**
      * @return The temperature.
      */
-    public static int getTemperature()
+    public int getTemperature()
     {
         return temperature;
     }
@@ -79,7 +91,7 @@ public class Weather
     /**
      * @return The weather condition.
      */
-    public static String getCondition()
+    public String getCondition()
     {
         return weatherCondition;
     }